@@ -0,0 +1,359 @@
+package benchmarks;
+
+import util.Time;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The class generates the files of a growth run in the dialect read by FilesMBE: UTF-8 with a BOM, semicolon-separated columns,
+ * "dd.MM.yyyy HH:mm:ss:SSS" timestamps, values with a decimal comma and shutter states "Вкл"/"Выкл".
+ * A value channel is a constant level with uniform noise plus linear ramps. A shutter is opened or closed during the whole run
+ * except for the periodic patterns switching it, e.g. the barriers and wells of a superlattice.
+ * The shutter file contains the shutters of the precursors among the value channels. The settings file contains all the growth parameters of Data.
+ */
+public class LogGenerator {
+
+    public static final String[] CHANNELS = {"Al", "Ga", "In", "Si", "Mg", "N2", "NH3", "SiH4", "GMpower", "GMtemp", "Pyro", "Vacuum"};
+
+    private static final String BOM = "﻿";
+    private static final String TIME_CAPTION = "Дата Время";
+    private static final String OPENED = "Вкл";
+    private static final String CLOSED = "Выкл";
+
+    // level and noise amplitude of the channels in the order of CHANNELS
+    private static final double[] LEVELS = {1000, 900, 700, 1200, 400, 300, 0, 0, 30, 700, 650, 0};
+    private static final double[] NOISES = {0.3, 0.3, 0, 0, 0, 1, 0, 0, 0.1, 1, 2, 0};
+
+    private long startTimeStamp = 1524744629668L;
+    private long samplePeriod = 1000;
+    private long shutterPeriod = 1000;
+    private long duration = 3600000;
+    private long seed = 42;
+    private int[] channels = indices(CHANNELS.length);
+    private final double[] levels = LEVELS.clone();
+    private final double[] noises = NOISES.clone();
+    private final boolean[] opened = new boolean[CHANNELS.length];
+    private final List<Ramp> ramps = new ArrayList<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+
+    /**
+     * Linear change of a channel by delta within [start, start + duration), the change is kept after the ramp.
+     */
+    private static class Ramp {
+        final int channel;
+        final long start;
+        final long duration;
+        final double delta;
+
+        Ramp(int channel, long start, long duration, double delta) {
+            this.channel = channel;
+            this.start = start;
+            this.duration = duration;
+            this.delta = delta;
+        }
+
+        double getChange(long time) {
+            if (time < start) return 0;
+            if ((time >= start + duration) || (duration == 0)) return delta;
+            return delta*(time - start)/duration;
+        }
+    }
+
+    /**
+     * Repetitions of an opened and a closed state of a shutter starting at the given time.
+     */
+    private static class Pattern {
+        final int channel;
+        final long start;
+        final long openedDuration;
+        final long closedDuration;
+        final long repetitions;
+
+        Pattern(int channel, long start, long openedDuration, long closedDuration, long repetitions) {
+            this.channel = channel;
+            this.start = start;
+            this.openedDuration = openedDuration;
+            this.closedDuration = closedDuration;
+            this.repetitions = repetitions;
+        }
+
+        boolean covers(long time) {
+            return (time >= start) && ((time - start)/(openedDuration + closedDuration) < repetitions);
+        }
+
+        boolean isOpened(long time) {
+            return (time - start) % (openedDuration + closedDuration) < openedDuration;
+        }
+    }
+
+    /**
+     * It sets the value channels written to the values file in the given order.
+     * @param captions captions from CHANNELS
+     */
+    public LogGenerator setChannels(String... captions) {
+        int[] channels = new int[captions.length];
+        for (int i = 0; i < captions.length; i++) channels[i] = getChannel(captions[i]);
+        this.channels = channels;
+        return this;
+    }
+
+    public LogGenerator setStartTimeStamp(long startTimeStamp) {
+        this.startTimeStamp = startTimeStamp;
+        return this;
+    }
+
+    /**
+     * @param samplePeriod period of the lines of the values file in milliseconds
+     */
+    public LogGenerator setSamplePeriod(long samplePeriod) {
+        if (samplePeriod <= 0) throw new IllegalArgumentException("Sample period must be positive");
+        this.samplePeriod = samplePeriod;
+        return this;
+    }
+
+    /**
+     * @param shutterPeriod period of the lines of the shutter file in milliseconds
+     */
+    public LogGenerator setShutterPeriod(long shutterPeriod) {
+        if (shutterPeriod <= 0) throw new IllegalArgumentException("Shutter period must be positive");
+        this.shutterPeriod = shutterPeriod;
+        return this;
+    }
+
+    /**
+     * @param duration duration of the run in milliseconds
+     */
+    public LogGenerator setDuration(long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * It sets the duration of the run by the number of the lines of the values file.
+     */
+    public LogGenerator setRows(long rows) {
+        this.duration = rows*samplePeriod;
+        return this;
+    }
+
+    public LogGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * It sets the constant level and the amplitude of the uniform noise of a channel.
+     */
+    public LogGenerator setLevel(String caption, double level, double noise) {
+        int channel = getChannel(caption);
+        levels[channel] = level;
+        noises[channel] = noise;
+        return this;
+    }
+
+    /**
+     * It adds a linear ramp of a channel, e.g. heating of an effusion cell or of the substrate.
+     * @param start beginning of the ramp relative to the beginning of the run in milliseconds
+     * @param duration duration of the ramp in milliseconds
+     * @param delta change of the value
+     */
+    public LogGenerator addRamp(String caption, long start, long duration, double delta) {
+        ramps.add(new Ramp(getChannel(caption), start, duration, delta));
+        return this;
+    }
+
+    /**
+     * It sets the state of a shutter outside of its patterns.
+     */
+    public LogGenerator setOpened(String caption, boolean opened) {
+        this.opened[getChannel(caption)] = opened;
+        return this;
+    }
+
+    /**
+     * It adds periodic switching of a shutter.
+     * @param start beginning of the first opened state relative to the beginning of the run in milliseconds
+     * @param openedDuration duration of an opened state in milliseconds
+     * @param closedDuration duration of a closed state in milliseconds
+     * @param repetitions number of the opened states
+     */
+    public LogGenerator addPattern(String caption, long start, long openedDuration, long closedDuration, long repetitions) {
+        if (openedDuration + closedDuration <= 0) throw new IllegalArgumentException("Pattern period must be positive");
+        patterns.add(new Pattern(getChannel(caption), start, openedDuration, closedDuration, repetitions));
+        return this;
+    }
+
+    /**
+     * It adds a superlattice of two materials: the shutter of a precursor is opened during the barriers and closed during the wells.
+     * @param caption precursor switched by the superlattice, e.g. "Al" for AlGaN/GaN
+     * @param start beginning of the first barrier relative to the beginning of the run in milliseconds
+     * @param barrierDuration duration of a barrier in milliseconds
+     * @param wellDuration duration of a well in milliseconds
+     * @param periods number of the periods
+     */
+    public LogGenerator addSuperlattice(String caption, long start, long barrierDuration, long wellDuration, long periods) {
+        return addPattern(caption, start, barrierDuration, wellDuration, periods);
+    }
+
+    public long getStopTimeStamp() {
+        return startTimeStamp + Math.max(0, getRows(samplePeriod) - 1)*samplePeriod;
+    }
+
+    /**
+     * It writes the files of the run to a directory.
+     * @param directory directory of the run
+     * @return SyntheticRun object
+     * @throws IOException
+     */
+    public SyntheticRun write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SyntheticRun run = new SyntheticRun(directory.resolve("values.csv"), directory.resolve("shutters.csv"), directory.resolve("settings.json"),
+                startTimeStamp, getStopTimeStamp());
+        writeValues(run.getValues());
+        writeShutters(run.getShutters());
+        writeSettings(run.getSettings());
+        return run;
+    }
+
+    private long getRows(long period) {
+        return (duration + period - 1)/period;
+    }
+
+    private void writeValues(Path path) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(BOM).append(TIME_CAPTION);
+            for (int channel : channels) line.append(';').append(CHANNELS[channel]);
+            writer.append(line);
+            writer.newLine();
+            long rows = getRows(samplePeriod);
+            for (long i = 0; i < rows; i++) {
+                long time = i*samplePeriod;
+                line.setLength(0);
+                line.append(Time.millisToStr(startTimeStamp + time));
+                for (int channel : channels) {
+                    double value = levels[channel];
+                    if (noises[channel] != 0) value += noises[channel]*random.nextDouble();
+                    for (Ramp ramp : ramps)
+                        if (ramp.channel == channel) value += ramp.getChange(time);
+                    appendValue(line, value);
+                }
+                writer.append(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private void writeShutters(Path path) throws IOException {
+        List<Integer> shutters = new ArrayList<>();
+        for (int channel : channels)
+            if (getShutterCaption(channel) != null) shutters.add(channel);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(BOM).append(TIME_CAPTION);
+            for (int channel : shutters) line.append(';').append(getShutterCaption(channel));
+            writer.append(line);
+            writer.newLine();
+            long rows = getRows(shutterPeriod);
+            for (long i = 0; i < rows; i++) {
+                long time = i*shutterPeriod;
+                line.setLength(0);
+                line.append(Time.millisToStr(startTimeStamp + time));
+                for (int channel : shutters) line.append(';').append(isOpened(channel, time) ? OPENED : CLOSED);
+                writer.append(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private boolean isOpened(int channel, long time) {
+        for (Pattern pattern : patterns)
+            if ((pattern.channel == channel) && pattern.covers(time)) return pattern.isOpened(time);
+        return opened[channel];
+    }
+
+    /**
+     * It writes the settings in the format of the settings files of the setup.
+     */
+    private void writeSettings(Path path) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        String[][] cells = {{"aluminium", "0", "Al"}, {"gallium", "1", "Ga"}, {"silicon", "2", "Si"}, {"magnesium", "3", "Mg"}, {"indium", "4", "In"}};
+        for (String[] cell : cells)
+            json.append("  \"").append(cell[0]).append("\": {\"id\": ").append(cell[1]).append(", \"name\": \"").append(cell[2])
+                    .append("\", \"timeStep_ms\": 5000, \"resamplingError\": 1, \"effusKoeff\": 1e7, \"effusTemperature\": 20000, \"desorpKoeff\": 0, \"desorpTemperature\": 0},\n");
+        json.append("  \"nitrogenPlasma\": {\"id\": 5, \"name\": \"N2\", \"timeStep_ms\": 5000, \"resamplingError\": 1, \"a\": 0.476, \"b\": 0},\n");
+        json.append("  \"ammonia\": {\"id\": 6, \"name\": \"NH3\", \"timeStep_ms\": 5000, \"resamplingError\": 5, \"a\": 100, \"b\": 0},\n");
+        json.append("  \"silane\": {\"id\": 7, \"name\": \"SiH4\", \"timeStep_ms\": 5000, \"resamplingError\": 5, \"a\": 0, \"b\": 0},\n");
+        json.append("  \"heaterPower\": {\"id\": 8, \"name\": \"GMpower\", \"timeStep_ms\": 5000, \"resamplingError\": 1},\n");
+        json.append("  \"heaterTemperature\": {\"id\": 9, \"name\": \"GMtemp\", \"timeStep_ms\": 5000, \"resamplingError\": 20},\n");
+        json.append("  \"pyrometerTemperature\": {\"id\": 10, \"name\": \"Pyro\", \"timeStep_ms\": 5000, \"resamplingError\": 1},\n");
+        json.append("  \"activeParametersId\": [0, 1, 2, 3, 4, 5, 6, 7, 8]\n}\n");
+        Files.write(path, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * It returns the caption of the shutter of a channel or null if the channel is not a precursor with a shutter.
+     */
+    private static String getShutterCaption(int channel) {
+        String caption = CHANNELS[channel];
+        switch (caption) {
+            case "Al": case "Ga": case "In": case "Si": case "Mg":
+                return caption;
+            case "N2": case "NH3":
+                return caption + " RUN";
+            default:
+                return null;
+        }
+    }
+
+    private static int getChannel(String caption) {
+        int channel = Arrays.asList(CHANNELS).indexOf(caption);
+        if (channel < 0) throw new IllegalArgumentException("Unknown channel: " + caption);
+        return channel;
+    }
+
+    private static int[] indices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) indices[i] = i;
+        return indices;
+    }
+
+    /**
+     * It appends a separator and a value with three decimals and a decimal comma.
+     */
+    private static void appendValue(StringBuilder line, double value) {
+        long thousandths = Math.round(value*1000);
+        line.append(';');
+        if (thousandths < 0) {
+            line.append('-');
+            thousandths = -thousandths;
+        }
+        line.append(thousandths/1000).append(',');
+        long fraction = thousandths%1000;
+        if (fraction < 100) line.append('0');
+        if (fraction < 10) line.append('0');
+        line.append(fraction);
+    }
+
+    /**
+     * It generates a run. Arguments: directory, number of rows, optional number of superlattice periods (default 10).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Arguments: <directory> <rows> [superlattice periods]");
+            return;
+        }
+        long rows = Long.parseLong(args[1]);
+        int periods = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        SyntheticRun run = SyntheticRun.getGenerator(rows, 2*periods, 42).write(Paths.get(args[0]));
+        System.out.println("Written " + run.getValues() + ", " + run.getShutters() + ", " + run.getSettings());
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import epitaxy.growthconditions.datatreatment.Approximation;
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries to the resampled series of a loaded run: GrowthParameter.getValueAtTimeStamp() at random timestamps
+ * and Approximation.getLinearFit() over random windows of a minute to an hour.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @State(Scope.Thread)
+    public static class Queries {
+        GrowthParameter growthParameter;
+        long[] timeStamps = new long[QUERIES];
+        long[] windows = new long[QUERIES];
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(RunState state) {
+            growthParameter = state.data.aluminium;
+            Random random = new Random(42);
+            long start = state.run.getStartTimeStamp();
+            long duration = state.run.getStopTimeStamp() - start;
+            for (int i = 0; i < QUERIES; i++) {
+                timeStamps[i] = start + (long) (random.nextDouble()*duration);
+                windows[i] = 60000 + (long) (random.nextDouble()*3540000);
+            }
+        }
+
+        int next() {
+            next = (next + 1) & (QUERIES - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Double getValueAtTimeStamp(Queries queries) {
+        return queries.growthParameter.getValueAtTimeStamp(queries.timeStamps[queries.next()]);
+    }
+
+    @Benchmark
+    public Approximation.LinearFit getLinearFit(Queries queries) {
+        int i = queries.next();
+        return Approximation.getLinearFit(queries.growthParameter, queries.timeStamps[i], queries.timeStamps[i] + queries.windows[i]);
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import epitaxy.growthconditions.datatreatment.Resample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resampling of a raw series by Resample.getNodes(). The series is a noisy temperature of an effusion cell which steps at every shutter event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResampleBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"10", "1000"})
+    public int shutterEvents;
+
+    private long[] timeStamps;
+    private double[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int period = Math.max(1, rows/(shutterEvents + 1));
+        timeStamps = new long[rows];
+        values = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            timeStamps[i] = i*SyntheticRun.SAMPLE_PERIOD;
+            values[i] = 900 + 20*((i/period)%2) + 0.5*random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public int[] getNodes() {
+        return Resample.getNodes(timeStamps, values, rows, 1);
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.FilesMBE;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * A synthetic run shared by the benchmarks. The files are written once per trial, and the Data is loaded from them unless only the files are needed.
+ */
+@State(Scope.Benchmark)
+public class RunState {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"10", "1000"})
+    public int shutterEvents;
+
+    public SyntheticRun run;
+    public Data data;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mbe-benchmark");
+        run = SyntheticRun.write(directory, rows, shutterEvents, 42);
+        FilesMBE.setRunCaching(false);
+        FilesMBE.setLazyProcessing(false);      // the benchmarks of the loading include the processing
+        data = load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * It loads the whole run.
+     */
+    public Data load() throws IOException {
+        return FilesMBE.getData(run.getValues().toString(), run.getShutters().toString(), run.getSettings().toString());
+    }
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.FilesMBE;
+import epitaxy.structure.Heterostructure;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * The class times the pipeline FilesMBE.getData() -> Heterostructure on synthetic runs of growing size, from 10^4 rows up to the given limit by factors of 10,
+ * and reports the time and the throughput of every stage and the peak heap usage. A stage which throughput falls with the size stops scaling there.
+ * The runs are written by LogGenerator to a temporary directory and deleted after the measurement. The sidecars and the lazy processing are switched off,
+ * so every load parses the files and processes all the growth parameters. The peak heap is the sum of the peaks of the heap pools,
+ * so it is an upper bound of the real peak.
+ */
+public class ScalingSuite {
+
+    private static final String HEADER = "Rows;Files (MB);Generation (s);Load (s);Load (rows/s);Reconstruction (s);Layers;Peak heap (MB)";
+
+    /**
+     * It runs the suite. Arguments: maximal number of rows (default 10^7), number of superlattice periods (default 100), optional report file (semicolon-separated CSV).
+     */
+    public static void main(String[] args) throws IOException {
+        long maxRows = (args.length > 0) ? Long.parseLong(args[0]) : 10000000L;
+        int periods = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+        Path report = (args.length > 2) ? Paths.get(args[2]) : null;
+        FilesMBE.setRunCaching(false);
+        FilesMBE.setLazyProcessing(false);      // the time of the loading includes the processing
+        StringBuilder lines = new StringBuilder(HEADER).append(System.lineSeparator());
+        System.out.println(HEADER);
+        for (long rows = 10000; rows <= maxRows; rows *= 10) {
+            String line = measure(rows, periods);
+            System.out.println(line);
+            lines.append(line).append(System.lineSeparator());
+        }
+        if (report != null) Files.write(report, lines.toString().getBytes("UTF-8"));
+    }
+
+    /**
+     * It generates a run, loads it and reconstructs its heterostructure.
+     * @return line of the report
+     */
+    private static String measure(long rows, int periods) throws IOException {
+        Path directory = Files.createTempDirectory("mbe-scaling");
+        try {
+            long start = System.nanoTime();
+            SyntheticRun run = SyntheticRun.getGenerator(rows, 2*periods, 42).write(directory);
+            double generationSeconds = seconds(start);
+            double megabytes = (Files.size(run.getValues()) + Files.size(run.getShutters()))/1048576.0;
+
+            resetPeakHeap();
+            start = System.nanoTime();
+            Data data = FilesMBE.getData(run.getValues().toString(), run.getShutters().toString(), run.getSettings().toString());
+            double loadSeconds = seconds(start);
+            start = System.nanoTime();
+            Heterostructure heterostructure = new Heterostructure(data);
+            double reconstructionSeconds = seconds(start);
+            double peakHeap = getPeakHeap()/1048576.0;
+
+            return String.format(Locale.ROOT, "%d;%.1f;%.2f;%.3f;%.0f;%.3f;%d;%.0f", rows, megabytes, generationSeconds,
+                    loadSeconds, rows/loadSeconds, reconstructionSeconds, heterostructure.getLayers().size(), peakHeap);
+        }
+        finally {
+            delete(directory);
+        }
+    }
+
+    private static double seconds(long startNanos) {
+        return (System.nanoTime() - startNanos)/1e9;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
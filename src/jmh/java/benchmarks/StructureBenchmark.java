@@ -0,0 +1,67 @@
+package benchmarks;
+
+import epitaxy.structure.Heterostructure;
+import epitaxy.structure.Layer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconstruction of a loaded run: construction of a single Layer over an interval of the Al shutter and of the whole Heterostructure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StructureBenchmark {
+
+    @State(Scope.Thread)
+    public static class Layers {
+        long[] startTimeStamps;
+        long[] stopTimeStamps;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(RunState state) {
+            TreeMap<Long, Long> intervals = state.data.aluminium.getIntervals();
+            startTimeStamps = new long[intervals.size()];
+            stopTimeStamps = new long[intervals.size()];
+            int i = 0;
+            for (Map.Entry<Long, Long> interval : intervals.entrySet()) {
+                startTimeStamps[i] = interval.getKey();
+                stopTimeStamps[i] = interval.getValue();
+                i++;
+            }
+        }
+
+        int next() {
+            next = (next + 1 < startTimeStamps.length) ? next + 1 : 0;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Layer layer(RunState state, Layers layers) {
+        int i = layers.next();
+        return new Layer(i, layers.startTimeStamps[i], layers.stopTimeStamps[i], state.data);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Heterostructure heterostructure(RunState state) {
+        return new Heterostructure(state.data);
+    }
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The class contains the files of a synthetic growth run written by LogGenerator. The default run of the benchmarks is an AlGaN/GaN superlattice sampled every second:
+ * the Ga and N2 shutters are opened during the whole run, the Al shutter is switched the given number of times, and the cell and substrate temperatures ramp slowly.
+ */
+public class SyntheticRun {
+
+    public static final long SAMPLE_PERIOD = 1000;
+
+    private final Path values;
+    private final Path shutters;
+    private final Path settings;
+    private final long startTimeStamp;
+    private final long stopTimeStamp;
+
+    SyntheticRun(Path values, Path shutters, Path settings, long startTimeStamp, long stopTimeStamp) {
+        this.values = values;
+        this.shutters = shutters;
+        this.settings = settings;
+        this.startTimeStamp = startTimeStamp;
+        this.stopTimeStamp = stopTimeStamp;
+    }
+
+    public Path getValues() {
+        return values;
+    }
+
+    public Path getShutters() {
+        return shutters;
+    }
+
+    public Path getSettings() {
+        return settings;
+    }
+
+    public long getStartTimeStamp() {
+        return startTimeStamp;
+    }
+
+    public long getStopTimeStamp() {
+        return stopTimeStamp;
+    }
+
+    /**
+     * It returns the generator of the default run.
+     * @param rows number of the lines of the values and shutter files
+     * @param shutterEvents number of the switches of the Al shutter
+     * @param seed seed of the noise
+     * @return LogGenerator object
+     */
+    public static LogGenerator getGenerator(long rows, int shutterEvents, long seed) {
+        long duration = rows*SAMPLE_PERIOD;
+        long period = Math.max(SAMPLE_PERIOD, duration/(shutterEvents + 1L)/SAMPLE_PERIOD*SAMPLE_PERIOD);
+        return new LogGenerator()
+                .setSamplePeriod(SAMPLE_PERIOD)
+                .setShutterPeriod(SAMPLE_PERIOD)
+                .setRows(rows)
+                .setSeed(seed)
+                .setOpened("Ga", true)
+                .setOpened("N2", true)
+                .addSuperlattice("Al", period, period, period, (shutterEvents + 1)/2)
+                .addRamp("Al", 0, duration, 20)
+                .addRamp("Ga", 0, duration/2, 10)
+                .addRamp("GMpower", 0, duration, 20)
+                .addRamp("Pyro", 0, duration, 50);
+    }
+
+    /**
+     * It writes the files of the default run to a directory.
+     * @param directory directory of the run
+     * @param rows number of the lines of the values and shutter files
+     * @param shutterEvents number of the switches of the Al shutter
+     * @param seed seed of the noise
+     * @return SyntheticRun object
+     * @throws IOException
+     */
+    public static SyntheticRun write(Path directory, int rows, int shutterEvents, long seed) throws IOException {
+        return getGenerator(rows, shutterEvents, seed).write(directory);
+    }
+}
@@ -4,10 +4,12 @@ import epitaxy.growthconditions.datatreatment.Approximation;
 import epitaxy.growthconditions.parameters.GrowthParameter;
 import epitaxy.structure.Heterostructure;
 import epitaxy.structure.Layer;
+import server.AnalysisServer;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
@@ -17,6 +19,10 @@ import java.util.Locale;
  */
 public class Main {
     public static void main(String[] args) throws IOException {
+        if ((args.length > 0) && args[0].equals("server")) {
+            AnalysisServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
         Data data = FilesMBE.getData("resources/input/B081/B081_values.csv", "resources/input/B081/B081_shutters.csv", "resources/input/B081/B081_settings.json");
         Heterostructure B081 = new Heterostructure(data);
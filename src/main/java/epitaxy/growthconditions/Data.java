@@ -3,6 +3,7 @@ package epitaxy.growthconditions;
 import epitaxy.growthconditions.parameters.GrowthParameter;
 import epitaxy.growthconditions.parameters.EffusionCell;
 import epitaxy.growthconditions.parameters.GasFlow;
+import epitaxy.growthconditions.parameters.Precursor;
 import epitaxy.growthconditions.parameters.SubstrateHeat;
 
 import java.util.ArrayList;
@@ -38,6 +39,34 @@ public class Data {
 
     public List<Integer> activeParametersId = new  ArrayList<>();
 
+    public double thicknessError = 1e-4;      // relative error of numerical integration of growth rate over a layer
+
+    /**
+     * It returns the growth parameters needed for reconstruction of a heterostructure: the active growth parameters, all the precursors, because even the inactive ones
+     * determine the composition and the doping of a material, the heater power and the pyrometer temperature.
+     * @return List of GrowthParameters
+     */
+    public List<GrowthParameter> getRequiredParameters() {
+        List<GrowthParameter> requiredParameters = new ArrayList<>();
+        for (GrowthParameter growthParameter : getGrowthParameters()) {
+            if ((growthParameter instanceof Precursor) || (growthParameter == heaterPower) || (growthParameter == pyrometerTemperature)
+                    || activeParametersId.contains(growthParameter.getId()))
+                requiredParameters.add(growthParameter);
+        }
+        return requiredParameters;
+    }
+
+    /**
+     * It processes the pending growth parameters needed for reconstruction of a heterostructure (see getRequiredParameters()) concurrently,
+     * so that a Heterostructure does not process them one after another at their first access. The other growth parameters are left pending.
+     */
+    public void processRequiredParameters() {
+        List<GrowthParameter> pendingParameters = new ArrayList<>();
+        for (GrowthParameter growthParameter : getRequiredParameters())
+            if (growthParameter.isPending()) pendingParameters.add(growthParameter);
+        FilesMBE.processGrowthParameters(pendingParameters);
+    }
+
 
 
 
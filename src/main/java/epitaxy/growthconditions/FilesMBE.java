@@ -3,23 +3,74 @@ package epitaxy.growthconditions;
 import com.google.gson.Gson;
 import epitaxy.growthconditions.parameters.GrowthParameter;
 import epitaxy.growthconditions.parameters.Precursor;
+import util.PipelineMetrics;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static util.PipelineMetrics.Metric.*;
 
 /**
  * The class contains static methods that work with files from Molecular Beam Epitaxy setup
  */
 public class FilesMBE {
 
+    private static volatile ForkJoinPool processingPool = ForkJoinPool.commonPool();
+    private static volatile boolean sequentialProcessing = Boolean.getBoolean("mbe.sequential");
+    private static volatile boolean runCaching = Boolean.parseBoolean(System.getProperty("mbe.cache", "true"));
+    private static volatile boolean columnProjection = Boolean.parseBoolean(System.getProperty("mbe.projection", "true"));
+    private static volatile boolean lazyProcessing = Boolean.parseBoolean(System.getProperty("mbe.lazy", "true"));
+
+    /**
+     * It sets the pool which processes the growth parameters concurrently. The common pool is used by default.
+     * @param pool a ForkJoinPool object
+     */
+    public static void setProcessingPool(ForkJoinPool pool) {
+        processingPool = pool;
+    }
+
+    /**
+     * It switches processing of the growth parameters to the calling thread, which is useful for debugging. The default value can also be set by "mbe.sequential" system property.
+     * @param sequential "true" - the growth parameters are processed one after another; "false" - concurrently
+     */
+    public static void setSequentialProcessing(boolean sequential) {
+        sequentialProcessing = sequential;
+    }
+
+    /**
+     * It switches the binary sidecars of the growth runs (see RunCache) on or off. They are used by default, which can also be changed by "mbe.cache" system property.
+     * @param caching "true" - the parsed files are saved to a sidecar next to the values file, and the following loads read the sidecar while it matches the files;
+     *                "false" - the files are parsed at every load
+     */
+    public static void setRunCaching(boolean caching) {
+        runCaching = caching;
+    }
+
+    /**
+     * It switches the column projection of the values file on or off. It is on by default, which can also be changed by "mbe.projection" system property.
+     * @param projection "true" - only the columns of the growth parameters needed for reconstruction of a heterostructure are parsed (see getValueParameters()),
+     *                   the other growth parameters are left without samples; "false" - the columns of all the growth parameters are parsed
+     */
+    public static void setColumnProjection(boolean projection) {
+        columnProjection = projection;
+    }
+
+    /**
+     * It switches the lazy processing of the growth parameters on or off. It is on by default, which can also be changed by "mbe.lazy" system property.
+     * @param lazy "true" - a growth parameter is processed at the first access to its nodes or intervals (see GrowthParameter.initLazily()), and the samples of a sidecar
+     *             are passed to it at the same time; "false" - all the growth parameters are processed by getData()
+     */
+    public static void setLazyProcessing(boolean lazy) {
+        lazyProcessing = lazy;
+    }
+
     /**
      * It creates a file and saves timestamps and values separated tabulation character from a GrowthParameter to the file.
      * @param filePath path to the file
@@ -65,19 +116,82 @@ public class FilesMBE {
     public static Data getData(String valuesFilePath, String shutterFilePath, String settingsFilePath, long startTimeStamp, long stopTimeStamp) throws IOException {
         Data data = getSettings(settingsFilePath);
         List<GrowthParameter> growthParameters = data.getGrowthParameters();
-        loadValues(growthParameters, valuesFilePath, startTimeStamp, stopTimeStamp);
-        loadShutters(growthParameters, shutterFilePath, startTimeStamp, stopTimeStamp);
-        processGrowthParameters(growthParameters);
+        List<GrowthParameter> valueParameters = getValueParameters(data);
+        ForkJoinPool pool = getChunkPool();
+        RunCache cache = runCaching ? getRunCache(valuesFilePath, shutterFilePath, stopTimeStamp) : null;
+        Map<GrowthParameter, Runnable> valueLoaders = Collections.emptyMap();
+        if (cache != null) {
+            if (lazyProcessing) valueLoaders = cache.getValueLoaders(growthParameters, valueParameters, startTimeStamp, stopTimeStamp);
+            else cache.loadValues(growthParameters, valueParameters, startTimeStamp, stopTimeStamp);
+            cache.loadShutters(growthParameters, startTimeStamp, stopTimeStamp);
+        }
+        else if (pool == null) {
+            loadValues(growthParameters, valueParameters, valuesFilePath, startTimeStamp, stopTimeStamp);
+            loadShutters(growthParameters, shutterFilePath, startTimeStamp, stopTimeStamp);
+        }
+        else {
+            // the files fill different fields of the growth parameters, so they are loaded simultaneously
+            ForkJoinTask<Void> shutters = pool.submit(() -> {
+                loadShutters(growthParameters, shutterFilePath, startTimeStamp, stopTimeStamp);
+                return null;
+            });
+            try {
+                loadValues(growthParameters, valueParameters, valuesFilePath, startTimeStamp, stopTimeStamp);
+            }
+            finally {
+                LogChunks.join(shutters);
+            }
+        }
+        if (lazyProcessing) {
+            for (GrowthParameter growthParameter : growthParameters)
+                growthParameter.initLazily(valueLoaders.get(growthParameter));
+        }
+        else processGrowthParameters(growthParameters);
         return data;
     }
 
+    /**
+     * It returns the parsed files of a growth run. A valid sidecar of the run is used if it exists. Otherwise, if the whole files are needed anyway,
+     * the files are parsed completely and the sidecar is written for the following loads.
+     * @param valuesFilePath path of the file containing values vs. time
+     * @param shutterFilePath path of the file containing shutter states vs. time
+     * @param stopTimeStamp ending of the analyzed time interval
+     * @return RunCache object or null if the files must be parsed for the given time interval
+     * @throws IOException
+     */
+    private static RunCache getRunCache(String valuesFilePath, String shutterFilePath, long stopTimeStamp) throws IOException {
+        Path valuesPath = Paths.get(valuesFilePath);
+        Path shutterPath = Paths.get(shutterFilePath);
+        RunCache cache = RunCache.open(valuesPath, shutterPath);
+        if (cache != null) return cache.covers(stopTimeStamp) ? cache : null;
+        if (stopTimeStamp != Long.MAX_VALUE) return null;
+        cache = RunCache.parse(valuesPath, shutterPath, getChunkPool());
+        if (cache == null) return null;
+        try {
+            cache.write(RunCache.getPath(valuesPath));
+        } catch (IOException e) {
+            // e.g. a read-only directory, the files are parsed again next time
+        }
+        return cache;
+    }
+
+    /**
+     * It returns the growth parameters which samples are loaded from the values file. With the column projection, they are the ones needed for reconstruction of a heterostructure
+     * (see Data.getRequiredParameters()). Otherwise all the growth parameters are loaded.
+     * @param data Data object containing the settings
+     * @return List of GrowthParameters
+     */
+    static List<GrowthParameter> getValueParameters(Data data) {
+        return columnProjection ? data.getRequiredParameters() : data.getGrowthParameters();
+    }
+
     /**
      * It reads settings from a json-file and returns a List of GrowthParameter objects
      * @param settingsFilePath path of the json-file containing settings
      * @return Data object extracted from settings file
      * @throws IOException
      */
-    private static Data getSettings(String settingsFilePath) throws IOException {
+    static Data getSettings(String settingsFilePath) throws IOException {
         String jsonString = Files.lines(Paths.get(settingsFilePath)).reduce("", (s1, s2) -> s1 + s2);
         Gson g = new Gson();
         Data data = g.fromJson(jsonString, Data.class);
@@ -86,78 +200,134 @@ public class FilesMBE {
     }
 
     /**
-     * It converts string representation of timestamp to UNIX-format
-     * @param strTimestamp input string in "dd.MM.yyyy HH:mm:ss:SSS" format
-     * @return UNIX time in milliseconds
+     * It reads values from MBE file and saves them to GrowthParameters. The file is split into ranges of lines which are tokenized at byte level
+     * by LogScanners concurrently, and the samples of the ranges are appended to the GrowthParameters in the order of the file,
+     * so thinning of the samples by the time step gives the same result as a single pass.
+     * @param growthParameters input List of GrowthParameters
+     * @param valueParameters GrowthParameters which samples are loaded (see getValueParameters())
+     * @param valuesFilePath path of the file containing values vs. time
+     * @param startTimeStamp beginning of the analyzed time interval
+     * @param stopTimeStamp ending of the analyzed time interval
+     * @throws IOException
      */
-    private static long timeStringToMillis(String strTimestamp) {
-        DateFormat ISO_DATE_FORMAT = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss:SSS", Locale.ENGLISH);
-        long longTimeStamp = 0;
-        try {
-            longTimeStamp =  ISO_DATE_FORMAT.parse(strTimestamp).getTime();
-        } catch (ParseException e) {
-            e.printStackTrace();
+    private static void loadValues(List<GrowthParameter> growthParameters, List<GrowthParameter> valueParameters, String valuesFilePath,
+                                   long startTimeStamp, long stopTimeStamp) throws IOException {
+        long start = PipelineMetrics.start();
+        Path path = Paths.get(valuesFilePath);
+        GrowthParameter[] columnParameters;
+        long dataOffset;
+        try (LogScanner scanner = new LogScanner(path)) {
+            columnParameters = mapValueColumns(scanner.readCaptions(), growthParameters, valueParameters);
+            dataOffset = scanner.getNextLineOffset();
         }
-        return longTimeStamp;
+        dataOffset = getStartOffset(path, dataOffset, startTimeStamp);
+        LogChunks.process(path, dataOffset, getChunkPool(),
+                scanner -> parseValues(scanner, columnParameters, startTimeStamp, stopTimeStamp),
+                chunk -> {
+                    appendValues(columnParameters, chunk);
+                    return !chunk.stopped;
+                });
+        PipelineMetrics.stop(VALUES_PARSING_NANOS, null, start);
     }
 
     /**
-     * The method decorates Double.valueOf() and returns null instead of throwing of an exception.
+     * It returns the offset from which a file is parsed for a time interval. A windowed load seeks by the sparse index of the file (see LogIndex) to the lines
+     * preceding the interval closely, the lines before them would be skipped by the parser anyway.
+     * @param path path to the file
+     * @param dataOffset offset of the first line following the captions
+     * @param startTimeStamp beginning of the analyzed time interval
+     * @return offset of a line beginning
+     * @throws IOException
      */
-    private static Double doubleFromString(String str) {
-        try {
-            return Double.valueOf(str);
+    private static long getStartOffset(Path path, long dataOffset, long startTimeStamp) throws IOException {
+        if (startTimeStamp <= 0) return dataOffset;
+        return LogIndex.get(path, dataOffset, getChunkPool()).getOffset(startTimeStamp);
+    }
+
+    /**
+     * It appends the samples of a range of the values file to the GrowthParameters. A sample is skipped if it follows the last sample of its GrowthParameter earlier than in the time step.
+     */
+    static void appendValues(GrowthParameter[] columnParameters, ValuesChunk chunk) {
+        PipelineMetrics.add(ROWS_PARSED, null, chunk.lines);
+        for (int j = 0; j < columnParameters.length; j++) {
+            SampleColumn column = chunk.columns[j];
+            if (column == null) continue;
+            GrowthParameter currentGrowthParameter = columnParameters[j];
+            int accepted = 0;
+            for (int i = 0; i < column.size; i++)
+                if (appendSample(currentGrowthParameter, column.timeStamps[i], column.values[i])) accepted++;
+            countSamples(currentGrowthParameter, accepted, column.size - accepted);
         }
-        catch (NumberFormatException numExc) {
-            return null;
+    }
+
+    /**
+     * It adds the numbers of the accepted and dropped samples of a GrowthParameter to the metrics.
+     */
+    static void countSamples(GrowthParameter growthParameter, int accepted, int dropped) {
+        PipelineMetrics.add(SAMPLES_ACCEPTED, growthParameter.getName(), accepted);
+        PipelineMetrics.add(SAMPLES_DROPPED, growthParameter.getName(), dropped);
+    }
+
+    /**
+     * It adds a sample to a GrowthParameter unless the sample follows the last sample of the GrowthParameter earlier than in the time step.
+     * @return "true" if the sample has been added
+     */
+    static boolean appendSample(GrowthParameter growthParameter, long timeStamp, double value) {
+        long lastTimeStamp = growthParameter.getLastTimeStamp();
+        if ((lastTimeStamp + growthParameter.getTimeStep_ms()) <= timeStamp) {
+            growthParameter.addValue(timeStamp, value);
+            return true;
         }
+        return false;
     }
 
     /**
-     * It reads values from MBE file and saves them to GrowthParameters
-     * @param growthParameters input List of GrowthParameters
-     * @param valuesFilePath path of the file containing values vs. time
-     * @param startTimeStamp beginning of the analyzed time interval
-     * @param stopTimeStamp ending of the analyzed time interval
-     * @throws IOException
+     * It collects all the valid samples of the mapped columns from a range of the values file.
      */
-    private static void loadValues(List<GrowthParameter> growthParameters, String valuesFilePath, long startTimeStamp, long stopTimeStamp) throws IOException {
-        Iterator<String> iterator = Files.lines(Paths.get(valuesFilePath), StandardCharsets.UTF_8).iterator();
-        List<String> captions = (new ArrayList<>(Arrays.asList(iterator.next().toString().split(";"))));
-        captions.remove(0);
-        int parametersNumber = captions.size();
-        List<Integer> parameterIndexes = new ArrayList<>(parametersNumber);
-        for (int i = 0; i < parametersNumber; i++) parameterIndexes.add(null);
-        for (int i = 0; i < growthParameters.size(); i++) {
-                for (int j = 0; j < parametersNumber; j++) {
-                    if (captions.get(j).contains(growthParameters.get(i).getName())) {
-                        parameterIndexes.set(j, i);
-                        break;
-                    }
-                }
+    static ValuesChunk parseValues(LogScanner scanner, GrowthParameter[] columnParameters, long startTimeStamp, long stopTimeStamp) throws IOException {
+        boolean[] parsedColumns = new boolean[columnParameters.length];
+        for (int j = 0; j < columnParameters.length; j++)
+            parsedColumns[j] = (columnParameters[j] != null);
+        return parseValues(scanner, parsedColumns, startTimeStamp, stopTimeStamp);
+    }
+
+    /**
+     * It collects all the valid samples of the selected columns from a range of the values file.
+     * @param parsedColumns "true" for the columns to be parsed
+     */
+    static ValuesChunk parseValues(LogScanner scanner, boolean[] parsedColumns, long startTimeStamp, long stopTimeStamp) throws IOException {
+        ValuesChunk chunk = new ValuesChunk(parsedColumns.length);
+        int parametersNumber = 0;       // the fields following the last parsed column are not scanned
+        for (int j = 0; j < parsedColumns.length; j++) {
+            if (parsedColumns[j]) {
+                chunk.columns[j] = new SampleColumn();
+                parametersNumber = j + 1;
             }
-        long timeStamp = 0L;
-        while (iterator.hasNext()) {
-            List <String> line = new ArrayList<>(Arrays.asList(iterator.next().toString().replaceAll(";", " ; ").replaceAll(",", ".").split(";")));
-            timeStamp = timeStringToMillis(line.get(0));
-            if ( timeStamp > stopTimeStamp ) break;
-            else if ( timeStamp > startTimeStamp)
-                for (int j = 0; j < parametersNumber; j++) {
-                    Integer parameterIndex = parameterIndexes.get(j);
-                    if ( parameterIndex != null ) {
-                        Double value = doubleFromString(line.get(j + 1));
-                        GrowthParameter currentGrowthParameter = growthParameters.get(parameterIndex);
-                        long lastTimeStamp = (currentGrowthParameter.size() == 0) ? 0 : currentGrowthParameter.getTimeStamp(currentGrowthParameter.size() - 1);
-                        if ((value != null) && ((lastTimeStamp + currentGrowthParameter.getTimeStep_ms()) <= timeStamp)) {
-                            currentGrowthParameter.addValue(timeStamp, value);
-                        }
-                    }
+        }
+        while (scanner.nextLine()) {
+            scanner.nextField();
+            long timeStamp = scanner.parseTimeStamp();
+            if (chunk.firstTimeStamp == Long.MAX_VALUE) chunk.firstTimeStamp = timeStamp;
+            else if (timeStamp < chunk.lastTimeStamp) chunk.ordered = false;
+            chunk.lastTimeStamp = Math.max(chunk.lastTimeStamp, timeStamp);
+            if ( timeStamp > stopTimeStamp ) {
+                chunk.stopped = true;
+                break;
+            }
+            else if ( timeStamp > startTimeStamp) {
+                chunk.lines++;
+                for (int j = 0; (j < parametersNumber) && scanner.nextField(); j++) {
+                    SampleColumn column = chunk.columns[j];
+                    if ( (column != null) && scanner.parseNumber() ) column.add(timeStamp, scanner.getNumber());
                 }
+            }
         }
+        return chunk;
     }
 
     /**
-     * It reads shutter MBE file and saves shutter events to GrowthParameters
+     * It reads shutter MBE file and saves shutter events to GrowthParameters. The ranges of the file are parsed concurrently like in loadValues(),
+     * and the shutter states at the beginning of every range are compared with the states at the end of the previous one while the ranges are merged.
      * @param growthParameters input List of GrowthParameters
      * @param shutterFilePath path of the file containing shutter states vs. time
      * @param startTimeStamp beginning of the analyzed time interval
@@ -165,62 +335,229 @@ public class FilesMBE {
      * @throws IOException
      */
     private static void loadShutters(List<GrowthParameter> growthParameters, String shutterFilePath, long startTimeStamp, long stopTimeStamp) throws IOException {
-        Iterator<String> iterator = Files.lines(Paths.get(shutterFilePath), StandardCharsets.UTF_8).iterator();
-        List<String> captions = (new ArrayList<>(Arrays.asList(iterator.next().toString().split(";"))));
-        captions.remove(0);
-        int parametersNumber = captions.size();
-        List<Integer> parameterIndexes = new ArrayList<>(parametersNumber);
-        for (int i = 0; i < parametersNumber; i++) parameterIndexes.add(null);
-        for (int j = 0; j < growthParameters.size(); j++) {
-            for (int i = 0; i < parametersNumber; i++) {
-                if ((captions.get(i).contains(growthParameters.get(j).getName())) && (growthParameters.get(j) instanceof Precursor) ) {
-                    parameterIndexes.set(i, j);
-                    break;
-                }
+        long start = PipelineMetrics.start();
+        Path path = Paths.get(shutterFilePath);
+        GrowthParameter[] columnParameters;
+        long dataOffset;
+        try (LogScanner scanner = new LogScanner(path)) {
+            columnParameters = mapColumns(scanner.readCaptions(), growthParameters, true);
+            dataOffset = scanner.getNextLineOffset();
+        }
+        dataOffset = getStartOffset(path, dataOffset, startTimeStamp);
+        List<Precursor> precursors = new ArrayList<>();
+        int[] columnBits = getColumnBits(columnParameters, precursors);
+        long[] previousState = new long[1];
+        LogChunks.process(path, dataOffset, getChunkPool(),
+                scanner -> parseShutters(scanner, columnBits, startTimeStamp, stopTimeStamp),
+                chunk -> {
+                    previousState[0] = appendShutterEvents(precursors, chunk, previousState[0]);
+                    return !chunk.stopped;
+                });
+        PipelineMetrics.stop(SHUTTERS_PARSING_NANOS, null, start);
+    }
+
+    /**
+     * It assigns bits of the shutter states to the columns of the shutter file. The states of a line are packed into bits in the order of the columns.
+     * @param columnParameters Precursors assigned to the columns
+     * @param precursors empty List to be filled with the Precursors in the order of the bits
+     * @return array of the bits of the columns, unassigned columns contain -1
+     */
+    static int[] getColumnBits(GrowthParameter[] columnParameters, List<Precursor> precursors) {
+        int[] columnBits = new int[columnParameters.length];
+        for (int j = 0; j < columnParameters.length; j++) {
+            if (columnParameters[j] == null) columnBits[j] = -1;
+            else {
+                columnBits[j] = precursors.size();
+                precursors.add((Precursor) columnParameters[j]);
             }
         }
-        long timeStamp = 0L;
-        List<String> line;
-        List<Boolean> previousLine = new ArrayList<>(parametersNumber);
-        List<Boolean> currentLine = new ArrayList<>(parametersNumber);
-        for (int i = 0; i < parametersNumber; i++) {
-            previousLine.add(false);
-            currentLine.add(false);
-        }
-        while (iterator.hasNext()) {
-            line = new ArrayList<>(Arrays.asList(iterator.next().toString().replaceAll(";", " ; ").split(";")));
-            for (int i = 0; i < parametersNumber; i++) currentLine.set(i, getShutterState(line.get(i+1)));
-            timeStamp = timeStringToMillis(line.get(0));
-            if (timeStamp > stopTimeStamp) break;
-            if (timeStamp >= startTimeStamp) {
-                for (int i = 0; i < parametersNumber; i++) {
-                    if ( (!currentLine.get(i).equals(previousLine.get(i))) && (parameterIndexes.get(i) != null) && (growthParameters.get(parameterIndexes.get(i)) instanceof Precursor) )
-                    {
-                        Precursor grParameter = (Precursor) growthParameters.get(parameterIndexes.get(i));
-                        grParameter.setShutterEvent(timeStamp, currentLine.get(i));
-                        previousLine.set(i, currentLine.get(i));
-                    }
+        // Data contains much less than 64 precursors
+        if (precursors.size() > Long.SIZE) throw new IllegalArgumentException("Too many precursors in the shutter file");
+        return columnBits;
+    }
+
+    /**
+     * It saves the shutter events of a range of the shutter file to the Precursors.
+     * @param previousState shutter states at the end of the previous range
+     * @return shutter states at the end of the range
+     */
+    static long appendShutterEvents(List<Precursor> precursors, ShutterChunk chunk, long previousState) {
+        if (chunk.lines == 0) return previousState;
+        PipelineMetrics.add(SHUTTER_ROWS_PARSED, null, chunk.lines);
+        PipelineMetrics.add(SHUTTER_EVENTS, null, chunk.events.size);
+        setShutterEvents(precursors, chunk.firstTimeStamp, previousState, chunk.firstState);
+        for (int i = 0; i < chunk.events.size; i++) {
+            long event = (long) chunk.events.values[i];
+            precursors.get((int) (event >> 1)).setShutterEvent(chunk.events.timeStamps[i], (event & 1) != 0);
+        }
+        return chunk.lastState;
+    }
+
+    /**
+     * It finds shutter events within a range of the shutter file. The state of the first line is kept separately, because the state preceding it is known only after parsing of the previous range.
+     */
+    static ShutterChunk parseShutters(LogScanner scanner, int[] columnBits, long startTimeStamp, long stopTimeStamp) throws IOException {
+        ShutterChunk chunk = new ShutterChunk();
+        while (scanner.nextLine()) {
+            scanner.nextField();
+            long timeStamp = scanner.parseTimeStamp();
+            chunk.lastTimeStamp = Math.max(chunk.lastTimeStamp, timeStamp);
+            if (timeStamp > stopTimeStamp) {
+                chunk.stopped = true;
+                break;
+            }
+            if (timeStamp < startTimeStamp) continue;
+            long state = 0;
+            for (int j = 0; (j < columnBits.length) && scanner.nextField(); j++)
+                if ( (columnBits[j] >= 0) && scanner.parseShutterState() ) state |= 1L << columnBits[j];
+            addShutterLine(chunk, timeStamp, state);
+        }
+        return chunk;
+    }
+
+    /**
+     * It adds the shutter states of a line within the analyzed time interval to a range of the shutter file.
+     */
+    static void addShutterLine(ShutterChunk chunk, long timeStamp, long state) {
+        if (chunk.lines == 0) {
+            chunk.firstTimeStamp = timeStamp;
+            chunk.firstState = state;
+        }
+        else {
+            for (long changes = state ^ chunk.lastState; changes != 0; changes &= changes - 1) {
+                int bit = Long.numberOfTrailingZeros(changes);
+                chunk.events.add(timeStamp, (bit << 1) | ((state >>> bit) & 1));
+            }
+        }
+        chunk.lastState = state;
+        chunk.lines++;
+    }
+
+    /**
+     * It saves the events of the shutters which states differ in two bit sets.
+     */
+    private static void setShutterEvents(List<Precursor> precursors, long timeStamp, long previousState, long state) {
+        for (long changes = state ^ previousState; changes != 0; changes &= changes - 1) {
+            int bit = Long.numberOfTrailingZeros(changes);
+            precursors.get(bit).setShutterEvent(timeStamp, ((state >>> bit) & 1) != 0);
+        }
+    }
+
+    /**
+     * It assigns the growth parameters to the columns of a file. A growth parameter is assigned to the first column which caption contains its name.
+     * @param captions captions of the columns except for the time column
+     * @param growthParameters input List of GrowthParameters
+     * @param precursorsOnly "true" - only Precursors are assigned
+     * @return array of the GrowthParameters assigned to the columns, unassigned columns contain null
+     */
+    static GrowthParameter[] mapColumns(List<String> captions, List<GrowthParameter> growthParameters, boolean precursorsOnly) {
+        GrowthParameter[] columnParameters = new GrowthParameter[captions.size()];
+        for (GrowthParameter growthParameter : growthParameters) {
+            if (precursorsOnly && !(growthParameter instanceof Precursor)) continue;
+            for (int j = 0; j < captions.size(); j++) {
+                if (captions.get(j).contains(growthParameter.getName())) {
+                    columnParameters[j] = growthParameter;
+                    break;
                 }
             }
         }
+        return columnParameters;
+    }
+
+    /**
+     * It assigns the growth parameters whose samples are loaded to the columns of the values file. The columns are assigned to all the growth parameters first, so a column
+     * whose caption contains the names of several growth parameters is given to the last of them, as if all the growth parameters were loaded. Then the columns
+     * given to the growth parameters which are not loaded are left unassigned, so the projection never passes a column to another growth parameter.
+     * @param captions captions of the columns except for the time column
+     * @param growthParameters input List of GrowthParameters
+     * @param valueParameters GrowthParameters which samples are loaded (see getValueParameters())
+     * @return array of the GrowthParameters assigned to the columns, unassigned columns contain null
+     */
+    static GrowthParameter[] mapValueColumns(List<String> captions, List<GrowthParameter> growthParameters, List<GrowthParameter> valueParameters) {
+        GrowthParameter[] columnParameters = mapColumns(captions, growthParameters, false);
+        for (int j = 0; j < columnParameters.length; j++)
+            if ((columnParameters[j] != null) && !valueParameters.contains(columnParameters[j])) columnParameters[j] = null;
+        return columnParameters;
     }
 
     /**
-     * It converts string representation of a shutter state to boolean type
-     * @param s input string
-     * @return boolean "true" - shutter switch on; "false" - shutter switch off
+     * It returns the pool parsing the ranges of the files or null if the files must be parsed by the calling thread.
      */
-    private static boolean getShutterState(String s) {
-        if ( (s.trim().toLowerCase().equals("вкл")) || (s.trim().toLowerCase().equals("on")) ) return true;
-        else return false;
+    static ForkJoinPool getChunkPool() {
+        return sequentialProcessing ? null : processingPool;
     }
 
     /**
-     * It makes final processing of all the growth parameters. The method can be call only after loading of values and shutters.
+     * Samples of a range of the values file.
+     */
+    static class ValuesChunk {
+        final SampleColumn[] columns;
+        int lines;              // number of lines within the analyzed time interval
+        long firstTimeStamp = Long.MAX_VALUE;   // timestamp of the first parsed line
+        long lastTimeStamp;     // timestamp of the last parsed line
+        boolean ordered = true; // the timestamps of the lines do not decrease
+        boolean stopped;        // the range contains the end of the analyzed time interval
+
+        ValuesChunk(int columnsNumber) {
+            columns = new SampleColumn[columnsNumber];
+        }
+    }
+
+    /**
+     * Shutter states and events of a range of the shutter file.
+     */
+    static class ShutterChunk {
+        int lines;              // number of lines within the analyzed time interval
+        long lastTimeStamp;     // timestamp of the last parsed line
+        long firstTimeStamp;
+        long firstState;
+        long lastState;
+        final SampleColumn events = new SampleColumn();     // value of an event is (bit << 1) | state
+        boolean stopped;
+    }
+
+    /**
+     * Growable pair of arrays of timestamps and values.
+     */
+    static class SampleColumn {
+        long[] timeStamps = new long[16];
+        double[] values = new double[16];
+        int size;
+
+        void add(long timeStamp, double value) {
+            if (size == timeStamps.length) {
+                timeStamps = Arrays.copyOf(timeStamps, size*2);
+                values = Arrays.copyOf(values, size*2);
+            }
+            timeStamps[size] = timeStamp;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    /**
+     * It makes final processing of the growth parameters. The method can be call only after loading of values and shutters.
+     * The growth parameters are independent, so they are processed concurrently in the processing pool unless sequential processing is set.
      * @param growthParameters
      */
-    private static void processGrowthParameters(List<GrowthParameter> growthParameters) {
+    static void processGrowthParameters(List<GrowthParameter> growthParameters) {
+        if (sequentialProcessing) {
+            for (GrowthParameter growthParameter : growthParameters)
+                processGrowthParameter(growthParameter);
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(growthParameters.size());
         for (GrowthParameter growthParameter : growthParameters)
-            growthParameter.init();
+            tasks.add(processingPool.submit(() -> processGrowthParameter(growthParameter)));
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+    }
+
+    /**
+     * It processes a pending growth parameter at once or a loaded one from scratch.
+     */
+    private static void processGrowthParameter(GrowthParameter growthParameter) {
+        if (growthParameter.isPending()) growthParameter.process();
+        else growthParameter.init();
     }
 }
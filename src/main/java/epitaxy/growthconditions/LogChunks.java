@@ -0,0 +1,135 @@
+package epitaxy.growthconditions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The class splits a log file into byte ranges aligned on lines, parses the ranges concurrently and passes the results to a consumer in the order of the ranges.
+ * The number of parsed but not yet consumed ranges is limited, so memory consumption does not depend on the file size.
+ */
+class LogChunks {
+
+    static final long CHUNK_SIZE = 8L << 20;
+
+    private static volatile long chunkSize = CHUNK_SIZE;
+
+    /**
+     * Parser of a byte range of a file.
+     */
+    interface Parser<T> {
+        T parse(LogScanner scanner) throws IOException;
+    }
+
+    /**
+     * Consumer of the parsed ranges. It returns false if the following ranges are not needed anymore.
+     */
+    interface Consumer<T> {
+        boolean accept(T chunk) throws IOException;
+    }
+
+    /**
+     * It sets the size of the ranges. The ranges of CHUNK_SIZE are used by default, the tests make them small to place the boundaries of the ranges within the runs of lines.
+     * @param size size of a range in bytes
+     */
+    static void setChunkSize(long size) {
+        if (size <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        chunkSize = size;
+    }
+
+    /**
+     * It parses a file from the given offset up to its end.
+     * @param path path to the file
+     * @param startOffset offset of the first line to be parsed
+     * @param pool pool parsing the ranges or null if the ranges must be parsed one after another by the calling thread
+     * @param parser parser of a single range
+     * @param consumer consumer receiving the parsed ranges in the order of the file
+     * @throws IOException
+     */
+    static <T> void process(Path path, long startOffset, ForkJoinPool pool, Parser<T> parser, Consumer<T> consumer) throws IOException {
+        process(path, startOffset, Long.MAX_VALUE, pool, parser, consumer);
+    }
+
+    /**
+     * It parses the lines of a file which begin within the given byte range.
+     * @param path path to the file
+     * @param startOffset offset of the first line to be parsed
+     * @param stopOffset ending of the range (exclusive)
+     * @param pool pool parsing the ranges or null if the ranges must be parsed one after another by the calling thread
+     * @param parser parser of a single range
+     * @param consumer consumer receiving the parsed ranges in the order of the file
+     * @throws IOException
+     */
+    static <T> void process(Path path, long startOffset, long stopOffset, ForkJoinPool pool, Parser<T> parser, Consumer<T> consumer) throws IOException {
+        long size = chunkSize;
+        long end = Math.min(Files.size(path), stopOffset);
+        int count = (int) Math.max(1, (end - startOffset + size - 1)/size);
+        if ((pool == null) || (count == 1)) {
+            for (int i = 0; i < count; i++) {
+                try (LogScanner scanner = new LogScanner(path, chunkStart(startOffset, size, i), chunkStop(startOffset, stopOffset, size, i, count))) {
+                    if (!consumer.accept(parser.parse(scanner))) return;
+                }
+            }
+            return;
+        }
+        int window = 2*pool.getParallelism();
+        Deque<ForkJoinTask<T>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            while ((next < count) && (pending.size() < window)) pending.add(submit(pool, path, parser, chunkStart(startOffset, size, next), chunkStop(startOffset, stopOffset, size, next++, count)));
+            while (!pending.isEmpty()) {
+                T chunk = join(pending.poll());
+                if (next < count) pending.add(submit(pool, path, parser, chunkStart(startOffset, size, next), chunkStop(startOffset, stopOffset, size, next++, count)));
+                if (!consumer.accept(chunk)) return;
+            }
+        }
+        finally {
+            for (ForkJoinTask<T> task : pending) task.cancel(false);
+        }
+    }
+
+    /**
+     * It waits for a task and returns its result. An IOException thrown by the task is rethrown as is.
+     * @throws IOException
+     */
+    static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static <T> ForkJoinTask<T> submit(ForkJoinPool pool, Path path, Parser<T> parser, long startOffset, long stopOffset) {
+        return pool.submit(() -> {
+            try (LogScanner scanner = new LogScanner(path, startOffset, stopOffset)) {
+                return parser.parse(scanner);
+            }
+        });
+    }
+
+    private static long chunkStart(long startOffset, long size, int index) {
+        return startOffset + index*size;
+    }
+
+    private static long chunkStop(long startOffset, long stopOffset, long size, int index, int count) {
+        return (index == count - 1) ? stopOffset : startOffset + (index + 1)*size;
+    }
+}
@@ -0,0 +1,137 @@
+package epitaxy.growthconditions;
+
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.growthconditions.parameters.Precursor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class follows files of a running growth, which are being appended by the Molecular Beam Epitaxy setup. Every refresh reads only the lines completed since the previous refresh
+ * and updates the growth parameters incrementally, so the cost of a refresh depends on the amount of the new data rather than on the length of the growth.
+ * The files are expected only to grow. A LogFollower object is not thread-safe.
+ */
+public class LogFollower {
+
+    private final Path valuesPath;
+    private final Path shutterPath;
+    private final Data data;
+    private final List<GrowthParameter> growthParameters;
+    private final List<GrowthParameter> valueParameters;
+
+    // state of the values file, the columns are assigned as soon as the caption line is complete
+    private GrowthParameter[] valueColumns;
+    private long valuesOffset;
+    private long lastValuesTimeStamp = Long.MIN_VALUE;
+
+    // state of the shutter file including the shutter states of the last line
+    private int[] shutterColumnBits;
+    private final List<Precursor> precursors = new ArrayList<>();
+    private long shutterOffset;
+    private long shutterState;
+    private long lastShutterTimeStamp = Long.MIN_VALUE;
+
+    /**
+     * It prepares following of the files, the files are read by refresh().
+     * @param valuesFilePath path of the file containing values vs. time
+     * @param shutterFilePath path of the file containing shutter states vs. time
+     * @param settingsFilePath path of the json-file containing settings
+     * @throws IOException
+     */
+    public LogFollower(String valuesFilePath, String shutterFilePath, String settingsFilePath) throws IOException {
+        valuesPath = Paths.get(valuesFilePath);
+        shutterPath = Paths.get(shutterFilePath);
+        data = FilesMBE.getSettings(settingsFilePath);
+        growthParameters = data.getGrowthParameters();
+        valueParameters = FilesMBE.getValueParameters(data);
+        for (GrowthParameter growthParameter : growthParameters)
+            growthParameter.setFollowed(true);
+    }
+
+    /**
+     * It returns the Data object which is updated by refresh().
+     */
+    public Data getData() {
+        return data;
+    }
+
+    /**
+     * It reads the lines completed since the previous refresh and updates the growth parameters. An incomplete last line is left for the next refresh.
+     * @return "true" if new lines have been read
+     * @throws IOException
+     */
+    public boolean refresh() throws IOException {
+        boolean valuesRead = readValues();
+        boolean shuttersRead = readShutters();
+        if (!valuesRead && !shuttersRead) return false;
+        for (GrowthParameter growthParameter : growthParameters)
+            growthParameter.update();
+        return true;
+    }
+
+    /**
+     * It returns the timestamp up to which the bounds of the intervals can not be changed by the following refreshes. It is limited by the last lines of both files and by the last nodes
+     * of the growth parameters needed for reconstruction of a heterostructure (see Data.getRequiredParameters()), which are moved when new samples come.
+     * A Heterostructure can be extended up to this timestamp.
+     * @return timestamp or Long.MIN_VALUE if any of the files has no data yet
+     */
+    public long getSettledTimeStamp() {
+        long settledTimeStamp = Math.min(lastValuesTimeStamp, lastShutterTimeStamp);
+        for (GrowthParameter growthParameter : data.getRequiredParameters())
+            settledTimeStamp = Math.min(settledTimeStamp, growthParameter.getSettledTimeStamp());
+        return settledTimeStamp;
+    }
+
+    /**
+     * It appends the samples of the new lines of the values file to the growth parameters.
+     * @return "true" if new lines have been read
+     */
+    private boolean readValues() throws IOException {
+        long end = LogScanner.getCompleteLinesEnd(valuesPath, valuesOffset);
+        if (end <= valuesOffset) return false;
+        if (valueColumns == null) {
+            try (LogScanner scanner = new LogScanner(valuesPath, 0, end)) {
+                valueColumns = FilesMBE.mapValueColumns(scanner.readCaptions(), growthParameters, valueParameters);
+                valuesOffset = scanner.getNextLineOffset();
+            }
+            if (end <= valuesOffset) return false;
+        }
+        LogChunks.process(valuesPath, valuesOffset, end, FilesMBE.getChunkPool(),
+                scanner -> FilesMBE.parseValues(scanner, valueColumns, 0, Long.MAX_VALUE),
+                chunk -> {
+                    FilesMBE.appendValues(valueColumns, chunk);
+                    lastValuesTimeStamp = Math.max(lastValuesTimeStamp, chunk.lastTimeStamp);
+                    return true;
+                });
+        valuesOffset = end;
+        return true;
+    }
+
+    /**
+     * It appends the shutter events of the new lines of the shutter file to the precursors. The shutter states of the last line are kept to find the events of the next lines.
+     * @return "true" if new lines have been read
+     */
+    private boolean readShutters() throws IOException {
+        long end = LogScanner.getCompleteLinesEnd(shutterPath, shutterOffset);
+        if (end <= shutterOffset) return false;
+        if (shutterColumnBits == null) {
+            try (LogScanner scanner = new LogScanner(shutterPath, 0, end)) {
+                shutterColumnBits = FilesMBE.getColumnBits(FilesMBE.mapColumns(scanner.readCaptions(), growthParameters, true), precursors);
+                shutterOffset = scanner.getNextLineOffset();
+            }
+            if (end <= shutterOffset) return false;
+        }
+        LogChunks.process(shutterPath, shutterOffset, end, FilesMBE.getChunkPool(),
+                scanner -> FilesMBE.parseShutters(scanner, shutterColumnBits, 0, Long.MAX_VALUE),
+                chunk -> {
+                    shutterState = FilesMBE.appendShutterEvents(precursors, chunk, shutterState);
+                    if (chunk.lines > 0) lastShutterTimeStamp = Math.max(lastShutterTimeStamp, chunk.lastTimeStamp);
+                    return true;
+                });
+        shutterOffset = end;
+        return true;
+    }
+}
@@ -0,0 +1,205 @@
+package epitaxy.growthconditions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The class contains a sparse index of a log file from timestamps to byte offsets, so that a load of a time interval can skip the lines preceding the interval.
+ * Every INTERVAL lines, the index keeps the offset of a line together with the latest timestamp of all the preceding lines, therefore the skipped lines are exactly
+ * the ones which the parser would skip even if the lines are not in chronological order. The index is saved to a sidecar file next to the log file
+ * and is rebuilt when the SourceStamp of the log file changes.
+ */
+class LogIndex {
+
+    static final String SUFFIX = ".index";
+    static final int INTERVAL = 4096;
+
+    private static final int MAGIC = 0x4D424549;        // "MBEI"
+    private static final int VERSION = 1;
+
+    private static volatile int interval = INTERVAL;
+
+    private final SourceStamp stamp;
+    private final long dataOffset;
+    private final long[] timeStamps;    // the latest timestamp of the lines preceding the offset, non-decreasing
+    private final long[] offsets;
+
+    private LogIndex(SourceStamp stamp, long dataOffset, long[] timeStamps, long[] offsets) {
+        this.stamp = stamp;
+        this.dataOffset = dataOffset;
+        this.timeStamps = timeStamps;
+        this.offsets = offsets;
+    }
+
+    /**
+     * It sets the number of lines between the entries of the built indexes. INTERVAL is used by default, the tests make it small to place the entries within the runs of lines.
+     * @param lines number of lines between the entries
+     */
+    static void setInterval(int lines) {
+        if (lines <= 0) throw new IllegalArgumentException("Index interval must be positive");
+        interval = lines;
+    }
+
+    /**
+     * It returns the path of the index of a log file.
+     */
+    static Path getPath(Path path) {
+        return path.resolveSibling(path.getFileName() + SUFFIX);
+    }
+
+    /**
+     * It returns the index of a log file. The index is read from its sidecar if the sidecar matches the file, otherwise it is built and saved to the sidecar.
+     * @param path path to the log file
+     * @param dataOffset offset of the first line following the captions
+     * @param pool pool scanning the ranges of the file or null if the file must be scanned by the calling thread
+     * @return LogIndex object
+     * @throws IOException
+     */
+    static LogIndex get(Path path, long dataOffset, ForkJoinPool pool) throws IOException {
+        SourceStamp stamp = SourceStamp.of(path);
+        LogIndex index = read(getPath(path), stamp, dataOffset);
+        if (index != null) return index;
+        index = build(path, stamp, dataOffset, pool);
+        try {
+            index.write(getPath(path));
+        } catch (IOException e) {
+            // e.g. a read-only directory, the index is built again next time
+        }
+        return index;
+    }
+
+    /**
+     * It returns the offset from which a file must be parsed to get all the lines with timestamps not less than the given one.
+     * @param timeStamp the earliest timestamp of the lines to be parsed
+     * @return offset of a line beginning
+     */
+    long getOffset(long timeStamp) {
+        // the first entry which is preceded by a line not earlier than the timestamp, the lines before the previous entry are skipped
+        int from = 0;
+        int to = timeStamps.length;
+        while (from < to) {
+            int half = (from + to) >>> 1;
+            if (timeStamps[half] < timeStamp) from = half + 1;
+            else to = half;
+        }
+        return (from == 0) ? dataOffset : offsets[from - 1];
+    }
+
+    /**
+     * It scans the timestamps of all the lines of a file. The ranges of the file are scanned concurrently, and their entries are merged in the order of the file.
+     */
+    private static LogIndex build(Path path, SourceStamp stamp, long dataOffset, ForkJoinPool pool) throws IOException {
+        Entries entries = new Entries();
+        long[] latestTimeStamp = {Long.MIN_VALUE};
+        LogChunks.process(path, dataOffset, pool, LogIndex::scan,
+                chunk -> {
+                    for (int i = 0; i < chunk.size; i++)
+                        entries.add(Math.max(latestTimeStamp[0], chunk.timeStamps[i]), chunk.offsets[i]);
+                    latestTimeStamp[0] = Math.max(latestTimeStamp[0], chunk.latestTimeStamp);
+                    return true;
+                });
+        return new LogIndex(stamp, dataOffset, Arrays.copyOf(entries.timeStamps, entries.size), Arrays.copyOf(entries.offsets, entries.size));
+    }
+
+    /**
+     * It makes the entries of a range of a file. The timestamps of the entries are the latest ones within the range only.
+     */
+    private static Entries scan(LogScanner scanner) throws IOException {
+        Entries entries = new Entries();
+        int lines = 0;
+        int interval = LogIndex.interval;
+        long offset = scanner.getNextLineOffset();
+        while (scanner.nextLine()) {
+            if ((lines > 0) && (lines % interval == 0)) entries.add(entries.latestTimeStamp, offset);
+            scanner.nextField();
+            entries.latestTimeStamp = Math.max(entries.latestTimeStamp, scanner.parseTimeStamp());
+            offset = scanner.getNextLineOffset();
+            lines++;
+        }
+        return entries;
+    }
+
+    /**
+     * It reads the index from its sidecar.
+     * @return LogIndex object or null if the sidecar does not exist, is damaged or does not match the file
+     */
+    private static LogIndex read(Path indexPath, SourceStamp stamp, long dataOffset) throws IOException {
+        if (!Files.isRegularFile(indexPath)) return null;
+        try (InputStream stream = Files.newInputStream(indexPath);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) return null;
+            if (!stamp.equals(new SourceStamp(in.readLong(), in.readLong(), in.readLong())) || (in.readLong() != dataOffset)) return null;
+            int size = in.readInt();
+            if ((size < 0) || (size > stamp.size)) return null;
+            long[] timeStamps = new long[size];
+            long[] offsets = new long[size];
+            for (int i = 0; i < size; i++) {
+                timeStamps[i] = in.readLong();
+                offsets[i] = in.readLong();
+            }
+            return new LogIndex(stamp, dataOffset, timeStamps, offsets);
+        }
+        catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * It writes the index to its sidecar under a unique temporary name and then renames it.
+     */
+    private void write(Path indexPath) throws IOException {
+        Path temporaryPath = Files.createTempFile(indexPath.toAbsolutePath().getParent(), indexPath.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            stamp.write(out);
+            out.writeLong(dataOffset);
+            out.writeInt(timeStamps.length);
+            for (int i = 0; i < timeStamps.length; i++) {
+                out.writeLong(timeStamps[i]);
+                out.writeLong(offsets[i]);
+            }
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        try {
+            Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Growable list of the entries of an index.
+     */
+    private static class Entries {
+        long[] timeStamps = new long[16];
+        long[] offsets = new long[16];
+        int size;
+        long latestTimeStamp = Long.MIN_VALUE;      // the latest timestamp of the scanned lines
+
+        void add(long timeStamp, long offset) {
+            if (size == timeStamps.length) {
+                timeStamps = Arrays.copyOf(timeStamps, size*2);
+                offsets = Arrays.copyOf(offsets, size*2);
+            }
+            timeStamps[size] = timeStamp;
+            offsets[size] = offset;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package epitaxy.growthconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import util.Time;
+
+/**
+ * The class tokenizes semicolon-separated files from Molecular Beam Epitaxy setup at byte level.
+ * A file is read through large NIO buffers in a single pass, and every line is split into fields in place, i.e. without creation of intermediate strings.
+ * A scanner can be limited to a byte range of the file, so that several scanners can process parts of a file concurrently.
+ */
+class LogScanner implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 22;
+    private static final byte SEPARATOR = ';';
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int LINE_RESERVE = 1 << 16;
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_EXACT_POWER = 22;
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final FileChannel channel;
+    private final long stopOffset;
+    private long bufferOffset;      // offset of the buffer beginning in the file
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private int limit;              // number of valid bytes in the buffer
+    private int position;           // beginning of the next line in the buffer
+    private boolean endOfFile;
+
+    private int lineStart;
+    private int lineEnd;            // the line terminator is excluded
+    private int fieldStart;
+    private int fieldEnd;
+
+    private double number;
+
+    /**
+     * It opens a file for scanning from the beginning.
+     * @param path path to the file
+     * @throws IOException
+     */
+    LogScanner(Path path) throws IOException {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * It opens a file for scanning of the lines which begin within the given byte range. A line which begins before the range and ends within it is skipped,
+     * and the last line is read completely even if it ends after the range.
+     * @param path path to the file
+     * @param startOffset beginning of the range
+     * @param stopOffset ending of the range (exclusive)
+     * @throws IOException
+     */
+    LogScanner(Path path, long startOffset, long stopOffset) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.stopOffset = stopOffset;
+        long length = Math.min(channel.size(), stopOffset) - startOffset + LINE_RESERVE;
+        bytes = new byte[(int) Math.max(1, Math.min(BUFFER_SIZE, length))];
+        buffer = ByteBuffer.wrap(bytes);
+        if (startOffset > 0) {
+            bufferOffset = startOffset - 1;
+            channel.position(bufferOffset);
+            skipLine();
+        }
+    }
+
+    /**
+     * It returns the offset following the last line terminator of a file, i.e. the end of the complete lines of a file which is being written.
+     * @param path path to the file
+     * @param fromOffset offset from which the file is searched
+     * @return offset following the last new line character or fromOffset if there is no such character after it
+     * @throws IOException
+     */
+    static long getCompleteLinesEnd(Path path, long fromOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = channel.size();
+            ByteBuffer block = ByteBuffer.allocate(LINE_RESERVE);
+            while (end > fromOffset) {
+                int length = (int) Math.min(LINE_RESERVE, end - fromOffset);
+                block.clear();
+                block.limit(length);
+                long blockStart = end - length;
+                while (block.hasRemaining())
+                    if (channel.read(block, blockStart + block.position()) < 0) return fromOffset;
+                for (int i = length - 1; i >= 0; i--)
+                    if (block.get(i) == NEW_LINE) return blockStart + i + 1;
+                end = blockStart;
+            }
+            return fromOffset;
+        }
+    }
+
+    /**
+     * It reads the first line of the file and returns its captions except for the first one (i.e. except for the time column caption).
+     * @return List of the captions or an empty List if the file is empty
+     * @throws IOException
+     */
+    List<String> readCaptions() throws IOException {
+        if (!nextLine()) return new ArrayList<>();
+        String header = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+        List<String> captions = new ArrayList<>(Arrays.asList(header.split(";")));
+        captions.remove(0);
+        return captions;
+    }
+
+    /**
+     * It moves the scanner to the next non-empty line.
+     * @return true if the line exists or false at the end of the file
+     * @throws IOException
+     */
+    boolean nextLine() throws IOException {
+        while (true) {
+            if (bufferOffset + position >= stopOffset) return false;
+            int end = indexOfNewLine(position);
+            while ((end < 0) && !endOfFile) {
+                fill();
+                end = indexOfNewLine(position);
+            }
+            if ((end < 0) && (position == limit)) return false;
+            lineStart = position;
+            lineEnd = (end < 0) ? limit : end;
+            position = (end < 0) ? limit : end + 1;
+            if ((lineEnd > lineStart) && (bytes[lineEnd - 1] == CARRIAGE_RETURN)) lineEnd--;
+            if (lineEnd > lineStart) {
+                fieldEnd = lineStart - 1;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * It returns the offset of the byte following the current line in the file, i.e. the beginning of the next line.
+     */
+    long getNextLineOffset() {
+        return bufferOffset + position;
+    }
+
+    /**
+     * It moves the scanner to the next field of the current line.
+     * @return true if the field exists or false at the end of the line
+     */
+    boolean nextField() {
+        if (fieldEnd >= lineEnd) return false;
+        fieldStart = fieldEnd + 1;
+        int i = fieldStart;
+        while ((i < lineEnd) && (bytes[i] != SEPARATOR)) i++;
+        fieldEnd = i;
+        return true;
+    }
+
+    /**
+     * It converts the current field in "dd.MM.yyyy HH:mm:ss:SSS" format to UNIX time.
+     * @return UNIX time in milliseconds or 0 if the field is malformed
+     */
+    long parseTimeStamp() {
+        return Time.bytesToMillis45(bytes, fieldStart, fieldEnd);
+    }
+
+    /**
+     * It parses the current field as a decimal number with either comma or point as decimal separator.
+     * The result is accessible via getNumber().
+     * @return true if the field contains a number or false otherwise
+     */
+    boolean parseNumber() {
+        int i = fieldStart;
+        int end = fieldEnd;
+        while ((i < end) && ((bytes[i] & 0xff) <= ' ')) i++;
+        while ((end > i) && ((bytes[end - 1] & 0xff) <= ' ')) end--;
+        if (i == end) return false;
+        int start = i;
+        boolean negative = false;
+        if ((bytes[i] == '-') || (bytes[i] == '+')) {
+            negative = (bytes[i] == '-');
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if ((b >= '0') && (b <= '9')) {
+                digits++;
+                if (fraction) fractionDigits++;
+                if ((mantissa != 0) || (b != '0')) {
+                    significantDigits++;
+                    if (significantDigits > MAX_EXACT_DIGITS) return parseNumberSlowly(start, end);
+                    mantissa = mantissa*10 + (b - '0');
+                }
+            }
+            else if (((b == '.') || (b == ',')) && !fraction) fraction = true;
+            else break;
+        }
+        if (digits == 0) return parseNumberSlowly(start, end);
+        int exponent = 0;
+        if (i < end) {
+            if ((bytes[i] != 'e') && (bytes[i] != 'E')) return parseNumberSlowly(start, end);
+            i++;
+            boolean negativeExponent = false;
+            if ((i < end) && ((bytes[i] == '-') || (bytes[i] == '+'))) {
+                negativeExponent = (bytes[i] == '-');
+                i++;
+            }
+            if ((i == end) || (end - i > 3)) return parseNumberSlowly(start, end);
+            for (; i < end; i++) {
+                byte b = bytes[i];
+                if ((b < '0') || (b > '9')) return parseNumberSlowly(start, end);
+                exponent = exponent*10 + (b - '0');
+            }
+            if (negativeExponent) exponent = -exponent;
+        }
+        exponent -= fractionDigits;
+        double value;
+        if (mantissa == 0) value = 0;
+        else if ((exponent >= 0) && (exponent <= MAX_EXACT_POWER)) value = mantissa*POWERS_OF_TEN[exponent];
+        else if ((exponent < 0) && (exponent >= -MAX_EXACT_POWER)) value = mantissa/POWERS_OF_TEN[-exponent];
+        else return parseNumberSlowly(start, end);
+        number = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * It returns the number parsed by the last successful call of parseNumber().
+     */
+    double getNumber() {
+        return number;
+    }
+
+    /**
+     * It converts the current field to a shutter state. Cyrillic "Вкл" and "On" in any case mean an opened shutter.
+     * @return "true" - shutter switch on; "false" - shutter switch off
+     */
+    boolean parseShutterState() {
+        int i = fieldStart;
+        int end = fieldEnd;
+        while ((i < end) && ((bytes[i] & 0xff) <= ' ')) i++;
+        while ((end > i) && ((bytes[end - 1] & 0xff) <= ' ')) end--;
+        int length = end - i;
+        if (length == 2) return ((bytes[i] | 0x20) == 'o') && ((bytes[i + 1] | 0x20) == 'n');
+        // "вкл" in UTF-8, the lowercase and uppercase letters differ by a single bit in the second byte
+        return (length == 6) && (bytes[i] == (byte) 0xD0) && ((bytes[i + 1] | 0x20) == (byte) 0xB2)
+                && (bytes[i + 2] == (byte) 0xD0) && ((bytes[i + 3] | 0x20) == (byte) 0xBA)
+                && (bytes[i + 4] == (byte) 0xD0) && ((bytes[i + 5] | 0x20) == (byte) 0xBB);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Fallback of parseNumber() for the rare notations which can not be converted exactly by the fast path (e.g. too many digits, NaN or hexadecimal numbers).
+     */
+    private boolean parseNumberSlowly(int start, int end) {
+        String s = new String(bytes, start, end - start, StandardCharsets.UTF_8).replace(',', '.');
+        try {
+            number = Double.valueOf(s);
+            return true;
+        }
+        catch (NumberFormatException numExc) {
+            return false;
+        }
+    }
+
+    /**
+     * It returns the index of the first new line character starting from the given index or -1 if there is no such character in the buffer.
+     */
+    private int indexOfNewLine(int from) {
+        for (int i = from; i < limit; i++)
+            if (bytes[i] == NEW_LINE) return i;
+        return -1;
+    }
+
+    /**
+     * It skips the rest of the line containing the current position.
+     */
+    private void skipLine() throws IOException {
+        int end = indexOfNewLine(position);
+        while ((end < 0) && !endOfFile) {
+            position = limit;
+            fill();
+            end = indexOfNewLine(position);
+        }
+        position = (end < 0) ? limit : end + 1;
+    }
+
+    /**
+     * It moves the unprocessed tail of the buffer to its beginning and reads the next portion of the file. The buffer is extended if a single line does not fit into it.
+     */
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (remaining == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length*2);
+        else System.arraycopy(bytes, position, bytes, 0, remaining);
+        bufferOffset += position;
+        buffer = ByteBuffer.wrap(bytes);
+        buffer.position(remaining);
+        position = 0;
+        limit = remaining;
+        int read = channel.read(buffer);
+        if (read < 0) endOfFile = true;
+        else limit += read;
+    }
+}
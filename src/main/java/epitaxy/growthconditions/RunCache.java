@@ -0,0 +1,419 @@
+package epitaxy.growthconditions;
+
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.growthconditions.parameters.Precursor;
+import util.PipelineMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static util.PipelineMetrics.Metric.CACHE_READING_NANOS;
+
+/**
+ * The class keeps the parsed files of a growth run in a binary sidecar file next to the values file, so that the files are parsed only once.
+ * The sidecar contains the captions and the primitive columns of all the samples of the values file, and the packed shutter states of all the lines of the shutter file.
+ * Its header contains SourceStamps of both source files, and the sidecar is ignored as soon as either of them differs.
+ * A valid sidecar is memory-mapped, and the samples are passed to the growth parameters right from the mapping.
+ */
+class RunCache {
+
+    static final String SUFFIX = ".cache";
+
+    private static final int MAGIC = 0x4D424552;        // "MBER"
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 8;
+
+    private final SourceStamp valuesStamp;
+    private final SourceStamp shutterStamp;
+
+    private final List<String> valueCaptions;
+    private final LongBuffer[] sampleTimeStamps;        // samples of every column of the values file, a column without samples is empty
+    private final DoubleBuffer[] sampleValues;
+    private final boolean valuesOrdered;
+
+    private final List<String> shutterCaptions;
+    private final LongBuffer lineTimeStamps;            // every line of the shutter file
+    private final LongBuffer lineStates;                // bit j is set if the shutter of column j is opened
+    private final boolean shuttersOrdered;
+
+    private RunCache(SourceStamp valuesStamp, SourceStamp shutterStamp,
+                     List<String> valueCaptions, LongBuffer[] sampleTimeStamps, DoubleBuffer[] sampleValues, boolean valuesOrdered,
+                     List<String> shutterCaptions, LongBuffer lineTimeStamps, LongBuffer lineStates, boolean shuttersOrdered) {
+        this.valuesStamp = valuesStamp;
+        this.shutterStamp = shutterStamp;
+        this.valueCaptions = valueCaptions;
+        this.sampleTimeStamps = sampleTimeStamps;
+        this.sampleValues = sampleValues;
+        this.valuesOrdered = valuesOrdered;
+        this.shutterCaptions = shutterCaptions;
+        this.lineTimeStamps = lineTimeStamps;
+        this.lineStates = lineStates;
+        this.shuttersOrdered = shuttersOrdered;
+    }
+
+    /**
+     * It returns the path of the sidecar of a values file.
+     */
+    static Path getPath(Path valuesPath) {
+        return valuesPath.resolveSibling(valuesPath.getFileName() + SUFFIX);
+    }
+
+    /**
+     * It checks if loading of the given time interval from the cache gives the same samples as parsing of the files. The files are parsed up to the first line
+     * later than the interval, so a limited interval can be only taken from the cache if the lines of both files are in chronological order.
+     * @param stopTimeStamp ending of the analyzed time interval
+     */
+    boolean covers(long stopTimeStamp) {
+        return (stopTimeStamp == Long.MAX_VALUE) || (valuesOrdered && shuttersOrdered);
+    }
+
+    /**
+     * It opens the sidecar of a growth run. Every count and length read from the sidecar is checked against the rest of the mapping before anything is allocated,
+     * and a sidecar which can not be read is deleted, so the files are parsed and the sidecar is written again.
+     * @param valuesPath path to the values file
+     * @param shutterPath path to the shutter file
+     * @return RunCache object or null if the sidecar does not exist, is damaged or does not match the source files
+     * @throws IOException
+     */
+    static RunCache open(Path valuesPath, Path shutterPath) throws IOException {
+        Path path = getPath(valuesPath);
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) throw new IllegalStateException("too large sidecar");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) throw new IllegalStateException("unknown format of sidecar");
+            SourceStamp valuesStamp = SourceStamp.read(buffer);
+            SourceStamp shutterStamp = SourceStamp.read(buffer);
+            if (!valuesStamp.equals(SourceStamp.of(valuesPath)) || !shutterStamp.equals(SourceStamp.of(shutterPath))) return null;
+            List<String> valueCaptions = readCaptions(buffer);
+            boolean valuesOrdered = (buffer.get() != 0);
+            LongBuffer[] sampleTimeStamps = new LongBuffer[valueCaptions.size()];
+            DoubleBuffer[] sampleValues = new DoubleBuffer[valueCaptions.size()];
+            for (int j = 0; j < valueCaptions.size(); j++) {
+                int size = readCount(buffer, Long.BYTES + Double.BYTES);
+                align(buffer);
+                sampleTimeStamps[j] = region(buffer, size*Long.BYTES).asLongBuffer();
+                sampleValues[j] = region(buffer, size*Double.BYTES).asDoubleBuffer();
+            }
+            List<String> shutterCaptions = readCaptions(buffer);
+            if (shutterCaptions.size() > Long.SIZE) throw new IllegalStateException("too many shutter columns");
+            boolean shuttersOrdered = (buffer.get() != 0);
+            int lines = readCount(buffer, 2*Long.BYTES);
+            align(buffer);
+            LongBuffer lineTimeStamps = region(buffer, lines*Long.BYTES).asLongBuffer();
+            LongBuffer lineStates = region(buffer, lines*Long.BYTES).asLongBuffer();
+            return new RunCache(valuesStamp, shutterStamp, valueCaptions, sampleTimeStamps, sampleValues, valuesOrdered,
+                    shutterCaptions, lineTimeStamps, lineStates, shuttersOrdered);
+        }
+        catch (RuntimeException e) {
+            delete(path);
+            return null;
+        }
+    }
+
+    /**
+     * It deletes a damaged sidecar. If it can not be deleted (e.g. it is still mapped on Windows), it is replaced when the sidecar is written next time.
+     */
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // the sidecar is rewritten after parsing of the files
+        }
+    }
+
+    /**
+     * It parses the whole files of a growth run. The sizes, modification times and hashes of the files are taken before parsing,
+     * so the cache becomes stale if a file is changed during parsing.
+     * @param valuesPath path to the values file
+     * @param shutterPath path to the shutter file
+     * @param pool pool parsing the ranges of the files or null if the files must be parsed by the calling thread
+     * @return RunCache object or null if the shutter states of a line do not fit into a long
+     * @throws IOException
+     */
+    static RunCache parse(Path valuesPath, Path shutterPath, ForkJoinPool pool) throws IOException {
+        SourceStamp valuesStamp = SourceStamp.of(valuesPath);
+        SourceStamp shutterStamp = SourceStamp.of(shutterPath);
+        List<String> shutterCaptions;
+        long shutterOffset;
+        try (LogScanner scanner = new LogScanner(shutterPath)) {
+            shutterCaptions = scanner.readCaptions();
+            shutterOffset = scanner.getNextLineOffset();
+        }
+        if (shutterCaptions.size() > Long.SIZE) return null;
+        List<String> valueCaptions;
+        long valuesOffset;
+        try (LogScanner scanner = new LogScanner(valuesPath)) {
+            valueCaptions = scanner.readCaptions();
+            valuesOffset = scanner.getNextLineOffset();
+        }
+
+        boolean[] parsedColumns = new boolean[valueCaptions.size()];
+        Arrays.fill(parsedColumns, true);
+        FilesMBE.SampleColumn[] columns = new FilesMBE.SampleColumn[valueCaptions.size()];
+        for (int j = 0; j < columns.length; j++) columns[j] = new FilesMBE.SampleColumn();
+        boolean[] valuesOrdered = {true};
+        long[] valuesLastTimeStamp = {Long.MIN_VALUE};
+        LogChunks.process(valuesPath, valuesOffset, pool,
+                scanner -> FilesMBE.parseValues(scanner, parsedColumns, Long.MIN_VALUE, Long.MAX_VALUE),
+                chunk -> {
+                    if (!chunk.ordered || (chunk.firstTimeStamp < valuesLastTimeStamp[0])) valuesOrdered[0] = false;
+                    valuesLastTimeStamp[0] = Math.max(valuesLastTimeStamp[0], chunk.lastTimeStamp);
+                    for (int j = 0; j < columns.length; j++) {
+                        FilesMBE.SampleColumn column = chunk.columns[j];
+                        for (int i = 0; i < column.size; i++) columns[j].add(column.timeStamps[i], column.values[i]);
+                    }
+                    return true;
+                });
+        LongBuffer[] sampleTimeStamps = new LongBuffer[columns.length];
+        DoubleBuffer[] sampleValues = new DoubleBuffer[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            sampleTimeStamps[j] = LongBuffer.wrap(columns[j].timeStamps, 0, columns[j].size);
+            sampleValues[j] = DoubleBuffer.wrap(columns[j].values, 0, columns[j].size);
+        }
+
+        ShutterLines lines = new ShutterLines();
+        int shutterColumns = shutterCaptions.size();
+        LogChunks.process(shutterPath, shutterOffset, pool,
+                scanner -> parseShutterLines(scanner, shutterColumns),
+                chunk -> {
+                    lines.append(chunk);
+                    return true;
+                });
+        return new RunCache(valuesStamp, shutterStamp, valueCaptions, sampleTimeStamps, sampleValues, valuesOrdered[0],
+                shutterCaptions, LongBuffer.wrap(lines.timeStamps, 0, lines.size), LongBuffer.wrap(lines.states, 0, lines.size), lines.ordered);
+    }
+
+    /**
+     * It writes the cache to a sidecar file. The file is written under a unique temporary name and then renamed, so concurrent loads of a run never see a partially written sidecar.
+     * @param path path to the sidecar
+     * @throws IOException
+     */
+    void write(Path path) throws IOException {
+        Path temporaryPath = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            valuesStamp.write(out);
+            shutterStamp.write(out);
+            writeCaptions(out, valueCaptions);
+            out.writeBoolean(valuesOrdered);
+            for (int j = 0; j < valueCaptions.size(); j++) {
+                LongBuffer timeStamps = sampleTimeStamps[j];
+                DoubleBuffer values = sampleValues[j];
+                out.writeInt(timeStamps.limit());
+                align(out);
+                for (int i = 0; i < timeStamps.limit(); i++) out.writeLong(timeStamps.get(i));
+                for (int i = 0; i < values.limit(); i++) out.writeDouble(values.get(i));
+            }
+            writeCaptions(out, shutterCaptions);
+            out.writeBoolean(shuttersOrdered);
+            out.writeInt(lineTimeStamps.limit());
+            align(out);
+            for (int i = 0; i < lineTimeStamps.limit(); i++) out.writeLong(lineTimeStamps.get(i));
+            for (int i = 0; i < lineStates.limit(); i++) out.writeLong(lineStates.get(i));
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        try {
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * It saves the samples of the values file within the given time interval to the GrowthParameters, exactly like parsing of the file does.
+     * @param growthParameters input List of GrowthParameters
+     * @param valueParameters GrowthParameters which samples are loaded (see FilesMBE.getValueParameters())
+     * @param startTimeStamp beginning of the analyzed time interval
+     * @param stopTimeStamp ending of the analyzed time interval
+     */
+    void loadValues(List<GrowthParameter> growthParameters, List<GrowthParameter> valueParameters, long startTimeStamp, long stopTimeStamp) {
+        GrowthParameter[] columnParameters = FilesMBE.mapValueColumns(valueCaptions, growthParameters, valueParameters);
+        for (int j = 0; j < columnParameters.length; j++)
+            if (columnParameters[j] != null) loadColumn(j, columnParameters[j], startTimeStamp, stopTimeStamp);
+    }
+
+    /**
+     * It returns the loaders of the samples of the values file within the given time interval, so that the column of a GrowthParameter is read from the mapping
+     * only when the growth parameter is processed (see GrowthParameter.initLazily()). The loaders of different columns can run concurrently.
+     * @param growthParameters input List of GrowthParameters
+     * @param valueParameters GrowthParameters which samples are loaded (see FilesMBE.getValueParameters())
+     * @param startTimeStamp beginning of the analyzed time interval
+     * @param stopTimeStamp ending of the analyzed time interval
+     * @return Map of the GrowthParameters having a column to the loaders saving the samples of the column to them
+     */
+    Map<GrowthParameter, Runnable> getValueLoaders(List<GrowthParameter> growthParameters, List<GrowthParameter> valueParameters, long startTimeStamp, long stopTimeStamp) {
+        GrowthParameter[] columnParameters = FilesMBE.mapValueColumns(valueCaptions, growthParameters, valueParameters);
+        Map<GrowthParameter, Runnable> loaders = new HashMap<>();
+        for (int j = 0; j < columnParameters.length; j++) {
+            GrowthParameter growthParameter = columnParameters[j];
+            if (growthParameter == null) continue;
+            int column = j;
+            loaders.put(growthParameter, () -> loadColumn(column, growthParameter, startTimeStamp, stopTimeStamp));
+        }
+        return loaders;
+    }
+
+    /**
+     * It saves the samples of a column within the given time interval to a GrowthParameter. The buffers are read by absolute positions, so the columns can be loaded concurrently.
+     */
+    private void loadColumn(int column, GrowthParameter growthParameter, long startTimeStamp, long stopTimeStamp) {
+        long start = PipelineMetrics.start();
+        LongBuffer timeStamps = sampleTimeStamps[column];
+        DoubleBuffer values = sampleValues[column];
+        int accepted = 0;
+        int dropped = 0;
+        for (int i = 0; i < timeStamps.limit(); i++) {
+            long timeStamp = timeStamps.get(i);
+            if (timeStamp > stopTimeStamp) break;
+            if (timeStamp <= startTimeStamp) continue;
+            if (FilesMBE.appendSample(growthParameter, timeStamp, values.get(i))) accepted++;
+            else dropped++;
+        }
+        FilesMBE.countSamples(growthParameter, accepted, dropped);
+        PipelineMetrics.stop(CACHE_READING_NANOS, growthParameter.getName(), start);
+    }
+
+    /**
+     * It saves the shutter events within the given time interval to the Precursors, exactly like parsing of the shutter file does.
+     * @param growthParameters input List of GrowthParameters
+     * @param startTimeStamp beginning of the analyzed time interval
+     * @param stopTimeStamp ending of the analyzed time interval
+     */
+    void loadShutters(List<GrowthParameter> growthParameters, long startTimeStamp, long stopTimeStamp) {
+        long start = PipelineMetrics.start();
+        GrowthParameter[] columnParameters = FilesMBE.mapColumns(shutterCaptions, growthParameters, true);
+        List<Precursor> precursors = new ArrayList<>();
+        int[] columnBits = FilesMBE.getColumnBits(columnParameters, precursors);
+        FilesMBE.ShutterChunk chunk = new FilesMBE.ShutterChunk();
+        for (int i = 0; i < lineTimeStamps.limit(); i++) {
+            long timeStamp = lineTimeStamps.get(i);
+            if (timeStamp > stopTimeStamp) break;
+            if (timeStamp < startTimeStamp) continue;
+            long state = 0;
+            for (long opened = lineStates.get(i); opened != 0; opened &= opened - 1) {
+                int j = Long.numberOfTrailingZeros(opened);
+                if (columnBits[j] >= 0) state |= 1L << columnBits[j];
+            }
+            FilesMBE.addShutterLine(chunk, timeStamp, state);
+        }
+        FilesMBE.appendShutterEvents(precursors, chunk, 0);
+        PipelineMetrics.stop(CACHE_READING_NANOS, null, start);
+    }
+
+    /**
+     * It reads timestamps and shutter states of all the columns from a range of the shutter file.
+     */
+    private static ShutterLines parseShutterLines(LogScanner scanner, int columnsNumber) throws IOException {
+        ShutterLines lines = new ShutterLines();
+        while (scanner.nextLine()) {
+            scanner.nextField();
+            long timeStamp = scanner.parseTimeStamp();
+            long state = 0;
+            for (int j = 0; (j < columnsNumber) && scanner.nextField(); j++)
+                if (scanner.parseShutterState()) state |= 1L << j;
+            lines.add(timeStamp, state);
+        }
+        return lines;
+    }
+
+    private static List<String> readCaptions(ByteBuffer buffer) {
+        int count = readCount(buffer, Integer.BYTES);
+        List<String> captions = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+            byte[] bytes = new byte[readCount(buffer, 1)];
+            buffer.get(bytes);
+            captions.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return captions;
+    }
+
+    private static void writeCaptions(DataOutputStream out, List<String> captions) throws IOException {
+        out.writeInt(captions.size());
+        for (String caption : captions) {
+            byte[] bytes = caption.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * It reads the number of the following elements and checks that so many elements of the given size fit into the rest of the buffer.
+     */
+    private static int readCount(ByteBuffer buffer, int elementBytes) {
+        int count = buffer.getInt();
+        if ((count < 0) || (count > buffer.remaining()/elementBytes)) throw new BufferUnderflowException();
+        return count;
+    }
+
+    /**
+     * It returns a view of the given number of bytes from the current position of the buffer and moves the position beyond them.
+     */
+    private static ByteBuffer region(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+        ByteBuffer region = buffer.slice();
+        region.limit(length);
+        buffer.position(buffer.position() + length);
+        return region;
+    }
+
+    private static void align(ByteBuffer buffer) {
+        buffer.position((buffer.position() + ALIGNMENT - 1) & -ALIGNMENT);
+    }
+
+    private static void align(DataOutputStream out) throws IOException {
+        while ((out.size() & (ALIGNMENT - 1)) != 0) out.writeByte(0);
+    }
+
+    /**
+     * Growable columns of timestamps and shutter states of the lines of the shutter file.
+     */
+    private static class ShutterLines {
+        long[] timeStamps = new long[16];
+        long[] states = new long[16];
+        int size;
+        long lastTimeStamp = Long.MIN_VALUE;    // the latest timestamp
+        boolean ordered = true;                 // the timestamps of the lines do not decrease
+
+        void add(long timeStamp, long state) {
+            if (size == timeStamps.length) {
+                timeStamps = Arrays.copyOf(timeStamps, size*2);
+                states = Arrays.copyOf(states, size*2);
+            }
+            if (timeStamp < lastTimeStamp) ordered = false;
+            lastTimeStamp = Math.max(lastTimeStamp, timeStamp);
+            timeStamps[size] = timeStamp;
+            states[size] = state;
+            size++;
+        }
+
+        void append(ShutterLines lines) {
+            for (int i = 0; i < lines.size; i++) add(lines.timeStamps[i], lines.states[i]);
+        }
+    }
+}
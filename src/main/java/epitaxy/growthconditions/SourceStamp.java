@@ -0,0 +1,80 @@
+package epitaxy.growthconditions;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Size, modification time and hash of a source file which a sidecar file is derived from. The hash covers the beginning and the end of the file, which is enough
+ * to distinguish the logs of different runs with coinciding sizes and modification times, and it keeps validation of a sidecar much cheaper than parsing.
+ */
+class SourceStamp {
+
+    private static final int HASHED_BYTES = 1 << 16;    // number of bytes hashed at the beginning and at the end of a file
+
+    final long size;
+    final long modificationTime;
+    final long hash;
+
+    SourceStamp(long size, long modificationTime, long hash) {
+        this.size = size;
+        this.modificationTime = modificationTime;
+        this.hash = hash;
+    }
+
+    static SourceStamp of(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modificationTime = Files.getLastModifiedTime(path).toMillis();
+            CRC32 crc = new CRC32();
+            ByteBuffer block = ByteBuffer.allocate((int) Math.min(size, 2*HASHED_BYTES));
+            if (size <= 2*HASHED_BYTES) read(channel, block, 0);
+            else {
+                block.limit(HASHED_BYTES);
+                read(channel, block, 0);
+                block.limit(2*HASHED_BYTES);
+                read(channel, block, size - HASHED_BYTES);
+            }
+            crc.update(block.array(), 0, block.position());
+            return new SourceStamp(size, modificationTime, crc.getValue());
+        }
+    }
+
+    static SourceStamp read(ByteBuffer buffer) {
+        return new SourceStamp(buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(size);
+        out.writeLong(modificationTime);
+        out.writeLong(hash);
+    }
+
+    /**
+     * It fills the remaining part of the block with the bytes of the file from the given offset.
+     */
+    private static void read(FileChannel channel, ByteBuffer block, long offset) throws IOException {
+        while (block.hasRemaining()) {
+            int read = channel.read(block, offset);
+            if (read < 0) break;
+            offset += read;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SourceStamp)) return false;
+        SourceStamp stamp = (SourceStamp) o;
+        return (size == stamp.size) && (modificationTime == stamp.modificationTime) && (hash == stamp.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size) ^ Long.hashCode(modificationTime) ^ Long.hashCode(hash);
+    }
+}
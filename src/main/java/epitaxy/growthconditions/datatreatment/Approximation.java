@@ -32,31 +32,25 @@ public class Approximation {
 
     /**
      * It finds parameters of line (slope and intercept) fitting of a growth parameter by least-squares function approximation within a specified range.
+     * The sums over the range are taken from the cumulative sums of the growth parameter, so the cost does not depend on the number of samples.
      * @param growthParameter input growth parameter
      * @param startTimeStamp beginning of the range
      * @param stopTimeStamp ending of the range
      * @return an object Approximation.LinearFit containing parameters of the linear fitting function
      */
     public static LinearFit getLinearFit(GrowthParameter growthParameter, long startTimeStamp, long stopTimeStamp) {
-        double XiSum = 0;
-        double Xi2Sum = 0;
-        double XiYiSum = 0;
-        double YiSum = 0;
-        int n = 0;
-        for (int i = 0; i < growthParameter.size(); i++) {
-            long timeStamp = growthParameter.getTimeStamp(i);
-            if ((timeStamp >= startTimeStamp) && (timeStamp <= stopTimeStamp)) {
-                double value = growthParameter.getValue(i);
-                timeStamp -= startTimeStamp;
-                XiSum += timeStamp;
-                Xi2Sum += timeStamp*timeStamp;
-                XiYiSum += timeStamp*value;
-                YiSum += value;
-                n++;
-            }
-        }
-        double slope = (n*XiYiSum - XiSum*YiSum)/(n*Xi2Sum - XiSum*XiSum);
-        double intercept = (YiSum - slope*XiSum)/n - slope*startTimeStamp;
+        int from = growthParameter.getSampleIndex(startTimeStamp);
+        int to = getStopIndex(growthParameter, stopTimeStamp);
+        int n = Math.max(0, to - from);
+        if (n < 2) return new LinearFit(Double.NaN, Double.NaN);
+        PrefixSums sums = growthParameter.getPrefixSums();
+        double XiSum = sums.sum(PrefixSums.T, from, to);
+        double YiSum = sums.sum(PrefixSums.V, from, to);
+        // sums of the products of the deviations from the mean values
+        double XXSum = sums.sum(PrefixSums.TT, from, to) - XiSum*XiSum/n;
+        double XYSum = sums.sum(PrefixSums.TV, from, to) - XiSum*YiSum/n;
+        double slope = XYSum/XXSum;
+        double intercept = (sums.getReferenceValue() + YiSum/n) - slope*(sums.getReferenceTimeStamp() + XiSum/n);
         return new LinearFit(slope, intercept);
     }
 
@@ -68,17 +62,17 @@ public class Approximation {
      * @return value of fitting constant which is calculated as averaged value
      */
     public static double getConstant(GrowthParameter growthParameter, long startTimeStamp, long stopTimeStamp) {
-        double YiSum = 0;
-        int n = 0;
-        for (int i = 0; i < growthParameter.size(); i++) {
-            long timeStamp = growthParameter.getTimeStamp(i);
-            if ((timeStamp >= startTimeStamp) && (timeStamp <= stopTimeStamp)) {
-                double value = growthParameter.getValue(i);
-                YiSum += value;
-                n++;
-            }
-        }
-        return YiSum/n;
+        int from = growthParameter.getSampleIndex(startTimeStamp);
+        int to = getStopIndex(growthParameter, stopTimeStamp);
+        if (to <= from) return Double.NaN;
+        PrefixSums sums = growthParameter.getPrefixSums();
+        return sums.getReferenceValue() + sums.sum(PrefixSums.V, from, to)/(to - from);
+    }
 
+    /**
+     * It returns the index following the last sample whose timestamp is not greater than the given one.
+     */
+    private static int getStopIndex(GrowthParameter growthParameter, long stopTimeStamp) {
+        return (stopTimeStamp == Long.MAX_VALUE) ? growthParameter.size() : growthParameter.getSampleIndex(stopTimeStamp + 1);
     }
 }
@@ -0,0 +1,88 @@
+package epitaxy.growthconditions.datatreatment;
+
+/**
+ * This class contains a table of the function f(x) = a*exp(-b/x) and of its derivative f'(x) = f(x)*b/x^2 over a range of positive arguments with a uniform step,
+ * and the function is interpolated between the points by cubic Hermite polynomials. The step is chosen so that the relative error of the interpolation does not exceed the given bound:
+ * the error of cubic Hermite interpolation is not greater than h^4/384*max|f''''|, where f''''/f is a polynomial of the derivatives of -b/x which absolute value is the largest
+ * at the lowest argument, and f changes within a step by the factor exp(|b|h/x^2) at most. Arguments out of the range are calculated exactly.
+ */
+public class ExponentialTable {
+
+    public static final int MAX_SIZE = 1 << 16;
+
+    private final double a;
+    private final double b;
+    private final double min;
+    private final double max;
+    private final double inverseStep;
+    private final double[] values;
+    private final double[] scaledDerivatives;       // derivatives multiplied by the step
+
+    private ExponentialTable(double a, double b, double min, double max, int intervals) {
+        this.a = a;
+        this.b = b;
+        this.min = min;
+        this.max = max;
+        double step = (max - min)/intervals;
+        this.inverseStep = 1/step;
+        values = new double[intervals + 1];
+        scaledDerivatives = new double[intervals + 1];
+        for (int i = 0; i <= intervals; i++) {
+            double x = (i == intervals) ? max : min + i*step;
+            values[i] = a*Math.exp(-b/x);
+            scaledDerivatives[i] = values[i]*b/(x*x)*step;
+        }
+    }
+
+    /**
+     * It tabulates the function a*exp(-b/x) over a range.
+     * @param a factor
+     * @param b activation constant
+     * @param min the lowest argument, it must be positive
+     * @param max the highest argument
+     * @param relativeError bound of the relative error of the interpolation
+     * @return ExponentialTable object or null if the table is not needed or would be larger than MAX_SIZE points
+     */
+    public static ExponentialTable create(double a, double b, double min, double max, double relativeError) {
+        if ((a == 0) || !(min > 0) || !(max > min) || !(relativeError > 0) || Double.isInfinite(max)) return null;
+        // absolute values of the derivatives of -b/x at the lowest argument: |b|/x^2, 2|b|/x^3, 6|b|/x^4, 24|b|/x^5
+        double g1 = Math.abs(b)/(min*min);
+        double g2 = 2*g1/min;
+        double g3 = 3*g2/min;
+        double g4 = 4*g3/min;
+        double fourthDerivative = g1*g1*g1*g1 + 6*g1*g1*g2 + 4*g1*g3 + 3*g2*g2 + g4;      // bound of |f''''/f|
+        // h^4/384*fourthDerivative*exp(g1*h) <= relativeError; the exponent is limited by a step not longer than 1/g1, i.e. by the factor e
+        double step = Math.sqrt(Math.sqrt(384*relativeError/(fourthDerivative*Math.E)));
+        if (g1 > 0) step = Math.min(step, 1/g1);
+        double intervals = Math.ceil((max - min)/step);
+        if (intervals >= MAX_SIZE) return null;
+        return new ExponentialTable(a, b, min, max, Math.max(1, (int) intervals));
+    }
+
+    /**
+     * It returns "true" if the arguments within the range are interpolated.
+     */
+    public boolean covers(double min, double max) {
+        return (min >= this.min) && (max <= this.max);
+    }
+
+    /**
+     * It returns the value of the function a*exp(-b/x).
+     * @param x argument
+     * @return value interpolated by the table within its range or calculated exactly out of the range
+     */
+    public double getValue(double x) {
+        double position = (x - min)*inverseStep;
+        if ((position >= 0) && (x <= max)) {
+            int i = Math.min((int) position, values.length - 2);
+            double t = position - i;
+            double u = 1 - t;
+            return u*u*((1 + 2*t)*values[i] + t*scaledDerivatives[i]) + t*t*((3 - 2*t)*values[i + 1] - u*scaledDerivatives[i + 1]);
+        }
+        return a*Math.exp(-b/x);
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,102 @@
+package epitaxy.growthconditions.datatreatment;
+
+/**
+ * This class contains cumulative sums of tabulated data which allow to calculate sums over any range of points in O(1).
+ * Timestamps and values are shifted by the first point to keep the sums small, and every cumulative sum is stored as an unevaluated sum
+ * of two doubles (so-called double-double), therefore the difference of two cumulative sums is as accurate as a direct summation over the range.
+ */
+public class PrefixSums {
+
+    public static final int T = 0;      // sum of (t - t0)
+    public static final int TT = 1;     // sum of (t - t0)^2
+    public static final int V = 2;      // sum of (v - v0)
+    public static final int VV = 3;     // sum of (v - v0)^2
+    public static final int TV = 4;     // sum of (t - t0)*(v - v0)
+
+    private static final int QUANTITIES = 5;
+
+    private final long referenceTimeStamp;
+    private final double referenceValue;
+    private final int size;
+
+    // element i holds the sum over the first i points; the exact sum is equal to high[i] + low[i]
+    private final double[][] high = new double[QUANTITIES][];
+    private final double[][] low = new double[QUANTITIES][];
+
+    /**
+     * It calculates the cumulative sums of the tabulated data.
+     * @param timeStamps array of arguments
+     * @param values array of values
+     * @param size number of the points, i.e. of the valid elements in the arrays
+     */
+    public PrefixSums(long[] timeStamps, double[] values, int size) {
+        this.size = size;
+        this.referenceTimeStamp = (size == 0) ? 0 : timeStamps[0];
+        this.referenceValue = (size == 0) ? 0 : values[0];
+        for (int q = 0; q < QUANTITIES; q++) {
+            high[q] = new double[size + 1];
+            low[q] = new double[size + 1];
+        }
+        double[] terms = new double[QUANTITIES];
+        for (int i = 0; i < size; i++) {
+            double t = timeStamps[i] - referenceTimeStamp;
+            double v = values[i] - referenceValue;
+            terms[T] = t;
+            terms[TT] = t*t;
+            terms[V] = v;
+            terms[VV] = v*v;
+            terms[TV] = t*v;
+            for (int q = 0; q < QUANTITIES; q++) {
+                double sum = high[q][i] + terms[q];
+                double error = twoSumError(high[q][i], terms[q], sum);
+                double lowSum = low[q][i] + error;
+                high[q][i + 1] = sum + lowSum;
+                low[q][i + 1] = lowSum - (high[q][i + 1] - sum);
+            }
+        }
+    }
+
+    public long getReferenceTimeStamp() {
+        return referenceTimeStamp;
+    }
+
+    public double getReferenceValue() {
+        return referenceValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * It returns the estimated heap size of the cumulative sums in bytes, i.e. of the high and low parts of all the quantities.
+     */
+    public long getHeapSize() {
+        return 2L*QUANTITIES*Double.BYTES*(size + 1);
+    }
+
+    /**
+     * It returns the sum of a quantity over the points with indexes within [from, to).
+     * @param quantity one of the constants T, TT, V, VV, TV
+     */
+    public double sum(int quantity, int from, int to) {
+        return (high[quantity][to] - high[quantity][from]) + (low[quantity][to] - low[quantity][from]);
+    }
+
+    /**
+     * It returns an upper bound of the absolute error of sum(quantity, from, to) caused by the summation. Rounding of the products (t - t0)^2, (v - v0)^2 and (t - t0)*(v - v0) is not included.
+     */
+    public double sumError(int quantity, int from, int to) {
+        double sum = sum(quantity, from, to);
+        return 2*Math.ulp(sum) + 4*Math.ulp(Math.ulp(Math.abs(high[quantity][to]) + Math.abs(high[quantity][from])));
+    }
+
+    /**
+     * Returns the rounding error of the floating-point addition a + b = sum (Knuth's TwoSum).
+     */
+    private static double twoSumError(double a, double b, double sum) {
+        double bVirtual = sum - a;
+        double aVirtual = sum - bVirtual;
+        return (a - aVirtual) + (b - bVirtual);
+    }
+}
@@ -1,8 +1,6 @@
 package epitaxy.growthconditions.datatreatment;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import static java.lang.Math.pow;
 
@@ -13,21 +11,64 @@ public class Resample {
 
     static final int MAX_NUMBER_OF_ITERATIONS = 10;
 
+    private static final double EPSILON = Math.ulp(1.0);
+    private static final int DIRECT_SUMMATION_LENGTH = 64;   // shorter ranges of points are processed directly, which is cheaper than the estimates
+
+    /**
+     * Residual Sum of Squares of a piecewise linear function over three nodes calculated in O(1) by means of prefix sums.
+     * The estimate contains an upper bound of its deviation from the value calculated by direct summation in rss(),
+     * so the direct summation is used only when two estimates are too close to be compared reliably.
+     */
+    private static final class RssEstimate {
+        final int[] points;
+        final double value;
+        final double bound;
+        private double exact;
+        private boolean exactKnown;
+
+        RssEstimate(long[] timeStamps, double[] values, PrefixSums sums, int[] points) {
+            this.points = points.clone();
+            double[] segment = new double[2];
+            double value = 0;
+            double bound = 0;
+            for (int i = 1; i < points.length; i++) {
+                estimateSegment(timeStamps, values, sums, points[i-1], points[i], segment);
+                value += segment[0];
+                bound += segment[1];
+            }
+            this.value = value;
+            this.bound = bound + 4*EPSILON*Math.abs(value);
+        }
+
+        /**
+         * Returns the value of rss() for the nodes of the estimate. The value is calculated by direct summation once and cached.
+         */
+        double exact(long[] timeStamps, double[] values) {
+            if (!exactKnown) {
+                exact = rss(timeStamps, values, points);
+                exactKnown = true;
+            }
+            return exact;
+        }
+    }
+
 
     /**
      * Finds nodes of piecewise linear approximating function for the given tabulated data
-     * @param timeStamps list of arguments
-     * @param values list of values
+     * @param timeStamps array of arguments
+     * @param values array of values
+     * @param size number of the points, i.e. of the valid elements in the arrays
      * @param resamplingError maximal allowable error (used to determine a number of intervals)
-     * @return list of indexes of points selected as nodes of piecewise linear approximating function
+     * @return array of indexes of points selected as nodes of piecewise linear approximating function
      */
-    public static List<Integer> getNodes(List<Long> timeStamps, List<Double> values, double resamplingError) {
-        if (timeStamps.size() == 0) return null;
-        List<Integer> resampledPoints = roughApproximation(timeStamps, values, resamplingError);
+    public static int[] getNodes(long[] timeStamps, double[] values, int size, double resamplingError) {
+        if (size == 0) return null;
+        int[] resampledPoints = roughApproximation(timeStamps, values, size, resamplingError);
+        PrefixSums sums = new PrefixSums(timeStamps, values, size);
         double prevRSS = rss(timeStamps, values, resampledPoints);
         int iteration = 0;
         while (iteration <= MAX_NUMBER_OF_ITERATIONS) {
-            resampledPoints = optimize(timeStamps, values, new ArrayList(resampledPoints));
+            resampledPoints = optimize(timeStamps, values, sums, resampledPoints);
             double rSS = rss(timeStamps, values, resampledPoints);
             if ( rSS/prevRSS > 0.9) break;  // if difference between RSS values is less than 10% than optimizing stops
             prevRSS = rSS;
@@ -37,80 +78,272 @@ public class Resample {
     }
 
     /**
-     * Makes a rough piecewise-linear approximation of the tabulated data
-     * @return list of indexes of points selected as nodes of piecewise linear approximating function
+     * Makes a rough piecewise-linear approximation of the tabulated data.
+     * The maximal deviation of the points from a trial line is found on the convex hull of the points in O(log n); the points are only scanned one by one
+     * when the deviation is too close to resamplingError to be compared reliably.
+     * @return array of indexes of points selected as nodes of piecewise linear approximating function
      */
-    private static List<Integer> roughApproximation(List<Long> timeStamps, List<Double> values, double resamplingError) {
-        List<Integer> resampledPoints = new ArrayList<Integer>();
+    private static int[] roughApproximation(long[] timeStamps, double[] values, int size, double resamplingError) {
+        int[] resampledPoints = new int[16];
+        int count = 0;
         int t = 0;
-        int size =  timeStamps.size();
+        Hull hull = new Hull(timeStamps, values, size);
+        hull.reset(t);
         for (int i = 1; i < size; i++) {
-            double k = (values.get(i) - values.get(t))/(timeStamps.get(i) - timeStamps.get(t));
-            double B = values.get(t) - k*timeStamps.get(t);
+            if (i - 1 > t) hull.add(i - 1);
+            double k = (values[i] - values[t])/(timeStamps[i] - timeStamps[t]);
+            double B = values[t] - k*timeStamps[t];
             if (Math.abs(k) > 0.001/60000)  // if gradient is higher then 0.001 units per minute
-                for (int j = t; j < i; j++) {
-                    double delta = Math.abs(values.get(j) - (k*timeStamps.get(j) + B));
-                    if (delta > resamplingError) {
-                        resampledPoints.add(t);
-                        t = i-1;
-                        break;
-                    }
+                if (exceedsError(timeStamps, values, hull, t, i, k, B, resamplingError)) {
+                    if (count == resampledPoints.length) resampledPoints = Arrays.copyOf(resampledPoints, count*2);
+                    resampledPoints[count++] = t;
+                    t = i-1;
+                    hull.reset(t);
                 }
             if ( i == size - 1) {
-                resampledPoints.add(t);
-                resampledPoints.add(i);
+                if (count + 2 > resampledPoints.length) resampledPoints = Arrays.copyOf(resampledPoints, count + 2);
+                resampledPoints[count++] = t;
+                resampledPoints[count++] = i;
             }
         }
-        return resampledPoints;
+        return Arrays.copyOf(resampledPoints, count);
+    }
+
+    /**
+     * Checks if any of the points [start, stop) deviates from the line k*t + B by more than resamplingError.
+     * @param hull convex hull of the points [start, stop)
+     */
+    private static boolean exceedsError(long[] timeStamps, double[] values, Hull hull, int start, int stop, double k, double B, double resamplingError) {
+        if ((stop - start > DIRECT_SUMMATION_LENGTH) && !Double.isInfinite(k) && !Double.isNaN(k)) {
+            double deviation = hull.maxDeviation(k);
+            double guard = 64*EPSILON*(Math.abs(k)*Math.abs((double) timeStamps[stop]) + Math.abs(B) + hull.maxAbsValue + hull.maxAbsDeviation(k) + Math.abs(resamplingError));
+            if (deviation > resamplingError + guard) return true;
+            if (deviation < resamplingError - guard) return false;
+        }
+        for (int j = start; j < stop; j++) {
+            double delta = Math.abs(values[j] - (k*timeStamps[j] + B));
+            if (delta > resamplingError) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Upper and lower convex hulls of consecutive points (Andrew's monotone chain). The points are appended in ascending order of timestamps,
+     * and their coordinates are taken relative to the first point.
+     */
+    private static final class Hull {
+        private final long[] timeStamps;
+        private final double[] values;
+        private final int[] upper;
+        private final int[] lower;
+        private int upperSize;
+        private int lowerSize;
+        private int origin;
+        private int last;
+        double maxAbsValue;
+
+        Hull(long[] timeStamps, double[] values, int size) {
+            this.timeStamps = timeStamps;
+            this.values = values;
+            upper = new int[size];
+            lower = new int[size];
+        }
+
+        void reset(int origin) {
+            this.origin = origin;
+            upperSize = 0;
+            lowerSize = 0;
+            maxAbsValue = 0;
+            add(origin);
+        }
+
+        void add(int point) {
+            last = point;
+            maxAbsValue = Math.max(maxAbsValue, Math.abs(values[point]));
+            while ((upperSize > 1) && (cross(upper[upperSize - 2], upper[upperSize - 1], point) >= 0)) upperSize--;
+            upper[upperSize++] = point;
+            while ((lowerSize > 1) && (cross(lower[lowerSize - 2], lower[lowerSize - 1], point) <= 0)) lowerSize--;
+            lower[lowerSize++] = point;
+        }
+
+        /**
+         * Returns the maximal absolute deviation of the points from the line with the given slope passing through the first point.
+         */
+        double maxDeviation(double k) {
+            double above = deviation(upper[extreme(upper, upperSize, k, 1)], k);
+            double below = deviation(lower[extreme(lower, lowerSize, k, -1)], k);
+            return Math.max(Math.abs(above), Math.abs(below));
+        }
+
+        /**
+         * Returns an upper bound of the magnitudes involved in the calculation of deviations, which is used to estimate their rounding errors.
+         */
+        double maxAbsDeviation(double k) {
+            return Math.abs(k)*(timeStamps[last] - timeStamps[origin]) + 2*maxAbsValue;
+        }
+
+        private double deviation(int point, double k) {
+            return (values[point] - values[origin]) - k*(timeStamps[point] - timeStamps[origin]);
+        }
+
+        /**
+         * Finds the vertex of a hull which is the farthest from the line with the given slope. The sign is 1 for the upper hull and -1 for the lower one.
+         */
+        private int extreme(int[] hull, int hullSize, double k, int sign) {
+            int from = 0;
+            int to = hullSize - 1;
+            while (from < to) {
+                int half = (from + to) >>> 1;
+                if (sign*deviation(hull[half + 1], k) > sign*deviation(hull[half], k)) from = half + 1;
+                else to = half;
+            }
+            return from;
+        }
+
+        private double cross(int a, int b, int c) {
+            double abTime = timeStamps[b] - timeStamps[a];
+            double acTime = timeStamps[c] - timeStamps[a];
+            return abTime*(values[c] - values[a]) - (values[b] - values[a])*acTime;
+        }
     }
 
     /**
      * Finds optimal positions of the resampled points by least-squares function approximation.
-     * @param roughResampledPoints list of the indexes of the resampled points obtained by rough piecewise linear approximation
-     * @return list of the indexes of the optimized points
+     * Every position tried costs O(1) due to the prefix sums.
+     * @param sums prefix sums of the tabulated data
+     * @param roughResampledPoints array of the indexes of the resampled points obtained by rough piecewise linear approximation
+     * @return array of the indexes of the optimized points
      */
-    private static List<Integer> optimize(List<Long> timeStamps, List<Double> values, List<Integer> roughResampledPoints) {
-        List<Integer> optimized = new ArrayList<>(roughResampledPoints.size());
-        optimized.add(roughResampledPoints.get(0));
-        for (int i = 1; i < (roughResampledPoints.size() - 1); i++) {
-            List<Integer> interval = Arrays.asList(optimized.get(i-1), roughResampledPoints.get(i), roughResampledPoints.get(i+1));
-            int variedPoint = roughResampledPoints.get(i);
+    private static int[] optimize(long[] timeStamps, double[] values, PrefixSums sums, int[] roughResampledPoints) {
+        int[] optimized = new int[roughResampledPoints.length];
+        optimized[0] = roughResampledPoints[0];
+        for (int i = 1; i < (roughResampledPoints.length - 1); i++) {
+            int[] interval = {optimized[i-1], roughResampledPoints[i], roughResampledPoints[i+1]};
+            int variedPoint = roughResampledPoints[i];
             int optimalPoint = variedPoint;
-            double prevRssValue = rss(timeStamps, values, interval);
-            double minRSS = prevRssValue;
+            if (interval[2] - interval[0] <= DIRECT_SUMMATION_LENGTH) {
+                optimized[i] = optimizeDirectly(timeStamps, values, interval, roughResampledPoints[i]);
+                continue;
+            }
+            RssEstimate prevRssValue = new RssEstimate(timeStamps, values, sums, interval);
+            RssEstimate minRSS = prevRssValue;
             int count = 0;
             int z = 1;
-            while (( variedPoint > interval.get(0) ) && ( variedPoint < interval.get(2)) ) {
+            while (( variedPoint > interval[0] ) && ( variedPoint < interval[2]) ) {
                 variedPoint += z;
-                interval.set(1, variedPoint);
-                double rssValue = rss(timeStamps, values, interval);
-                if (rssValue > prevRssValue) count++; else count = 0;
-                if (rssValue < minRSS) {
+                interval[1] = variedPoint;
+                RssEstimate rssValue = new RssEstimate(timeStamps, values, sums, interval);
+                if (compare(timeStamps, values, rssValue, prevRssValue) > 0) count++; else count = 0;
+                if (compare(timeStamps, values, rssValue, minRSS) < 0) {
                     minRSS = rssValue;
                     optimalPoint = variedPoint;
                 }
                 prevRssValue = rssValue;
-                if (( count == 5 ) && (z > 0)) { z = -1; count = 0; variedPoint = roughResampledPoints.get(i); }
+                if (( count == 5 ) && (z > 0)) { z = -1; count = 0; variedPoint = roughResampledPoints[i]; }
                 if (( count == 5 ) && (z < 0)) break;
             }
-            optimized.add(optimalPoint);
+            optimized[i] = optimalPoint;
         }
-        optimized.add(roughResampledPoints.get(roughResampledPoints.size()-1));
+        optimized[optimized.length - 1] = roughResampledPoints[roughResampledPoints.length - 1];
         return optimized;
     }
 
+    /**
+     * Finds the optimal position of the middle point of a short interval in the same way as optimize() does, but the RSS values are calculated by direct summation.
+     * @param interval indexes of the previous, the varied and the next points
+     * @param startPoint initial position of the varied point
+     * @return index of the optimal point
+     */
+    private static int optimizeDirectly(long[] timeStamps, double[] values, int[] interval, int startPoint) {
+        int variedPoint = startPoint;
+        int optimalPoint = variedPoint;
+        double prevRssValue = rss(timeStamps, values, interval);
+        double minRSS = prevRssValue;
+        int count = 0;
+        int z = 1;
+        while (( variedPoint > interval[0] ) && ( variedPoint < interval[2]) ) {
+            variedPoint += z;
+            interval[1] = variedPoint;
+            double rssValue = rss(timeStamps, values, interval);
+            if (rssValue > prevRssValue) count++; else count = 0;
+            if (rssValue < minRSS) {
+                minRSS = rssValue;
+                optimalPoint = variedPoint;
+            }
+            prevRssValue = rssValue;
+            if (( count == 5 ) && (z > 0)) { z = -1; count = 0; variedPoint = startPoint; }
+            if (( count == 5 ) && (z < 0)) break;
+        }
+        return optimalPoint;
+    }
+
+    /**
+     * Compares two RSS estimates in the same way as the values calculated by rss() would be compared.
+     * @return a negative number, zero or a positive number if the first RSS is less than, equal to or greater than the second one; zero is also returned if any of them is NaN
+     */
+    private static int compare(long[] timeStamps, double[] values, RssEstimate first, RssEstimate second) {
+        double difference = first.value - second.value;
+        if (Math.abs(difference) > (first.bound + second.bound)) return (difference > 0) ? 1 : -1;
+        double firstExact = first.exact(timeStamps, values);
+        double secondExact = second.exact(timeStamps, values);
+        if (firstExact > secondExact) return 1;
+        if (firstExact < secondExact) return -1;
+        return 0;
+    }
+
+    /**
+     * Calculates RSS between the tabulated data and the line connecting two nodes in O(1) using prefix sums.
+     * The line is the same as in rss(), but the sums are evaluated in the shifted coordinates (t - t0, v - v0) of the prefix sums.
+     * @param result array where the RSS and an upper bound of its deviation from the direct summation in rss() are stored
+     */
+    private static void estimateSegment(long[] timeStamps, double[] values, PrefixSums sums, int start, int stop, double[] result) {
+        int n = stop - start;
+        if (n == 0) {
+            result[0] = 0;
+            result[1] = 0;
+            return;
+        }
+        double k = (values[stop] - values[start])/(timeStamps[stop] - timeStamps[start]);
+        double b = values[stop] - k*timeStamps[stop];
+        double c = (values[stop] - sums.getReferenceValue()) - k*(timeStamps[stop] - sums.getReferenceTimeStamp());   // intercept in the shifted coordinates
+        double sT = sums.sum(PrefixSums.T, start, stop);
+        double sTT = sums.sum(PrefixSums.TT, start, stop);
+        double sV = sums.sum(PrefixSums.V, start, stop);
+        double sVV = sums.sum(PrefixSums.VV, start, stop);
+        double sTV = sums.sum(PrefixSums.TV, start, stop);
+        double value = sVV - 2*k*sTV - 2*c*sV + k*k*sTT + 2*k*c*sT + n*c*c;
+
+        // rounding errors of the estimate
+        double magnitude = sVV + 2*Math.abs(k)*Math.sqrt(sTT*sVV) + 2*Math.abs(c*sV) + k*k*sTT + 2*Math.abs(k*c*sT) + n*c*c;
+        double sumsError = sums.sumError(PrefixSums.VV, start, stop) + 2*Math.abs(k)*sums.sumError(PrefixSums.TV, start, stop) + 2*Math.abs(c)*sums.sumError(PrefixSums.V, start, stop)
+                + k*k*sums.sumError(PrefixSums.TT, start, stop) + 2*Math.abs(k*c)*sums.sumError(PrefixSums.T, start, stop);
+        double estimateError = 64*EPSILON*(magnitude + Math.sqrt(Math.abs(value)*sVV)) + sumsError;
+
+        // rounding errors of the direct summation in rss(), which evaluates the line in absolute coordinates
+        double rssMax = Math.max(value, 0) + estimateError;
+        double timeMax = Math.max(Math.abs((double) timeStamps[start]), Math.abs((double) timeStamps[stop]));
+        double referenceValue = Math.abs(sums.getReferenceValue());
+        double squaredValues = sVV + 2*referenceValue*Math.abs(sV) + n*referenceValue*referenceValue;
+        double lineMax = Math.abs(k)*timeMax + Math.abs(b);
+        double squaredTermErrors = 16*EPSILON*EPSILON*3*(n*lineMax*lineMax + squaredValues);
+        double directError = 2*Math.sqrt(rssMax*squaredTermErrors) + squaredTermErrors + (n + 1)*EPSILON*rssMax;
+
+        result[0] = value;
+        result[1] = estimateError + directError;
+    }
+
     /** Calculates Residual Sum of Squares (RSS) between tabulated data (timeStamps, values) and piecewise linear function (points)
      * returns RSS value
      * */
-    private static double rss(List<Long> timeStamps, List<Double> values, List<Integer> points) {
+    private static double rss(long[] timeStamps, double[] values, int[] points) {
 
-        int numberOfIntervals = points.size() - 1;
+        int numberOfIntervals = points.length - 1;
         double result = 0; // Residual Sum of Squares
         for (int i = 1; i <= numberOfIntervals; i++) {
-            double k = (values.get(points.get(i)) - values.get(points.get(i-1)))/(timeStamps.get(points.get(i)) - timeStamps.get(points.get(i-1)));
-            double b = values.get(points.get(i)) - k*timeStamps.get(points.get(i));
-            for (int j = points.get(i-1); j < points.get(i); j++) {
-                double delta = values.get(j) - (k*timeStamps.get(j) + b);
+            double k = (values[points[i]] - values[points[i-1]])/(timeStamps[points[i]] - timeStamps[points[i-1]]);
+            double b = values[points[i]] - k*timeStamps[points[i]];
+            for (int j = points[i-1]; j < points[i]; j++) {
+                double delta = values[j] - (k*timeStamps[j] + b);
                 result += pow(delta, 2);
             }
         }
@@ -0,0 +1,9 @@
+package epitaxy.growthconditions.datatreatment;
+
+/**
+ * Defines a method of resampling of a growth parameter
+ */
+public enum ResamplingMethod {
+    BATCH,      // least-squares piecewise-linear approximation of the whole series by Resample, the raw samples are kept until processing
+    ONLINE      // single-pass approximation by SwingDoor, only the nodes are kept
+}
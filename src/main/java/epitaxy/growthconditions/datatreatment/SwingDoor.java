@@ -0,0 +1,113 @@
+package epitaxy.growthconditions.datatreatment;
+
+/**
+ * This class makes a piecewise-linear approximation of a stream of samples in a single pass by the swing door algorithm.
+ * A segment starts at the last node, and every sample narrows the range of slopes of the lines from the node which pass within resamplingError from the samples.
+ * When the range becomes empty, the segment is finished at the previous sample, and its end node is put on a line from the middle of the range,
+ * so every sample deviates from the approximation by not more than resamplingError. The memory does not depend on the number of the samples.
+ */
+public class SwingDoor {
+
+    private final double resamplingError;
+
+    private boolean started;
+    private long nodeTimeStamp;         // the last node, i.e. the beginning of the current segment
+    private double nodeValue;
+    private long lastTimeStamp;         // the last sample
+    private double lastValue;
+    private int segmentSize;            // number of the samples after the node
+    private double lowerSlope;
+    private double upperSlope;
+
+    /**
+     * @param resamplingError maximal allowable deviation of the samples from the approximation
+     */
+    public SwingDoor(double resamplingError) {
+        this.resamplingError = Math.max(0, resamplingError);
+    }
+
+    /**
+     * It adds a sample to the stream. Samples which are not later than the previous one are ignored.
+     * @param timeStamp timestamp of the sample
+     * @param value value of the sample
+     * @return "true" if a node has been finished, it is accessible via getNodeTimeStamp() and getNodeValue()
+     */
+    public boolean add(long timeStamp, double value) {
+        if (!started) {
+            started = true;
+            nodeTimeStamp = timeStamp;
+            nodeValue = value;
+            lastTimeStamp = timeStamp;
+            lastValue = value;
+            return true;
+        }
+        if (timeStamp <= lastTimeStamp) return false;
+        double time = timeStamp - nodeTimeStamp;
+        double lower = Math.max(lowerSlope, (value - resamplingError - nodeValue)/time);
+        double upper = Math.min(upperSlope, (value + resamplingError - nodeValue)/time);
+        if ((segmentSize == 0) || (lower <= upper)) {
+            if (segmentSize == 0) {
+                lower = (value - resamplingError - nodeValue)/time;
+                upper = (value + resamplingError - nodeValue)/time;
+            }
+            lowerSlope = lower;
+            upperSlope = upper;
+            segmentSize++;
+            lastTimeStamp = timeStamp;
+            lastValue = value;
+            return false;
+        }
+        // the doors are closed: the segment ends at the previous sample, and the new one starts there
+        nodeValue = getEndValue();
+        nodeTimeStamp = lastTimeStamp;
+        time = timeStamp - nodeTimeStamp;
+        lowerSlope = (value - resamplingError - nodeValue)/time;
+        upperSlope = (value + resamplingError - nodeValue)/time;
+        segmentSize = 1;
+        lastTimeStamp = timeStamp;
+        lastValue = value;
+        return true;
+    }
+
+    /**
+     * Returns the timestamp of the last finished node.
+     */
+    public long getNodeTimeStamp() {
+        return nodeTimeStamp;
+    }
+
+    /**
+     * Returns the value of the last finished node.
+     */
+    public double getNodeValue() {
+        return nodeValue;
+    }
+
+    /**
+     * Returns the timestamp of the last sample.
+     */
+    public long getLastTimeStamp() {
+        return lastTimeStamp;
+    }
+
+    /**
+     * It checks if there are samples after the last finished node, i.e. if the current segment is not empty.
+     */
+    public boolean hasSegment() {
+        return segmentSize > 0;
+    }
+
+    /**
+     * Returns the timestamp of the end of the current segment if the stream stopped now, i.e. the timestamp of the last sample.
+     */
+    public long getEndTimeStamp() {
+        return lastTimeStamp;
+    }
+
+    /**
+     * Returns the value of the end of the current segment if the stream stopped now.
+     */
+    public double getEndValue() {
+        return nodeValue + (lowerSlope + upperSlope)/2*(lastTimeStamp - nodeTimeStamp);
+    }
+}
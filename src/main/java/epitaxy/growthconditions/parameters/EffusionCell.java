@@ -1,5 +1,7 @@
 package epitaxy.growthconditions.parameters;
 
+import epitaxy.growthconditions.datatreatment.ExponentialTable;
+
 /**
  * The class extends the abstract Precursor class. It is for Knudsen effusion cell.
  */
@@ -10,15 +12,82 @@ public class EffusionCell extends Precursor {
     private double effusTemperature;
     private double desorpKoeff;          // desorption rate: vDes = desorpKoeff*Exp(desorpTemperature/substrateTemperature)
     private double desorpTemperature;
+    private double fluxTableError = 1e-7;   // relative error of the tabulated effusion rate, 0 - the effusion rate is calculated exactly
+
+    // effusion rate tabulated over the range of the cell temperature, see buildFluxTable()
+    private transient ExponentialTable fluxTable;
+    private transient int scannedSize;
+    private transient double minValue = Double.POSITIVE_INFINITY;
+    private transient double maxValue = Double.NEGATIVE_INFINITY;
 
     public EffusionCell() {
         super();
     }
 
+    /**
+     * It processes the cell temperature and tabulates the effusion rate over the range of the resampled temperature.
+     */
+    @Override
+    public void init() {
+        super.init();
+        scannedSize = 0;
+        minValue = Double.POSITIVE_INFINITY;
+        maxValue = Double.NEGATIVE_INFINITY;
+        fluxTable = null;
+        buildFluxTable(0);
+    }
+
+    /**
+     * It processes the new samples of the cell temperature. The table of the effusion rate is rebuilt only if the temperature leaves its range.
+     */
+    @Override
+    public void update() {
+        super.update();
+        buildFluxTable(0.05);
+    }
+
+    /**
+     * It extends the range of the cell temperature by the nodes added after the previous call and tabulates the effusion rate if the range is not covered by the table.
+     * The values between the nodes are interpolated linearly, so they are within the range of the nodes. The last nodes can be replaced by update(), so they are scanned again.
+     * @param margin relative extension of the range on both sides, which prevents rebuilding of the table at every small extension of the range
+     */
+    private void buildFluxTable(double margin) {
+        int size = size();
+        for (int i = Math.max(0, scannedSize - 2); i < size; i++) {
+            double value = getValue(i);
+            if (value < minValue) minValue = value;
+            if (value > maxValue) maxValue = value;
+        }
+        scannedSize = size;
+        if ((fluxTableError <= 0) || (size == 0) || ((fluxTable != null) && fluxTable.covers(minValue, maxValue))) return;
+        double extension = margin*(maxValue - minValue);
+        double min = (minValue - extension > 0) ? minValue - extension : minValue;
+        // a constant temperature is tabulated over a degree
+        double max = Math.max(maxValue + extension, min + 1);
+        fluxTable = ExponentialTable.create(effusKoeff, effusTemperature, min, max, fluxTableError);
+    }
+
+    /**
+     * It estimates the heap size of the growth parameter including the table of the effusion rate, which keeps a value and a derivative per node.
+     */
+    @Override
+    public long estimateHeapSize() {
+        ExponentialTable table = fluxTable;
+        return super.estimateHeapSize() + ((table != null) ? 2L*Double.BYTES*table.size() : 0);
+    }
+
+    /**
+     * Returns the effusion rate at the given cell temperature. It is interpolated by the table within the range of the cell temperature with the relative error fluxTableError.
+     */
+    private double getEffusionRate(double value) {
+        ExponentialTable table = fluxTable;
+        return (table != null) ? table.getValue(value) : effusKoeff*Math.exp(-effusTemperature/value);
+    }
+
     @Override
     public double getGrowthRate(long timeStamp, double substrateTemperature) {
         Double value = getValueAtTimeStamp(timeStamp);
-        return ((value == null) || (value == 0))? 0 : (effusKoeff*Math.exp(-effusTemperature/getValueAtTimeStamp(timeStamp)) - desorpKoeff*Math.exp(desorpTemperature/substrateTemperature));
+        return ((value == null) || (value == 0))? 0 : (getEffusionRate(value) - desorpKoeff*Math.exp(desorpTemperature/substrateTemperature));
     }
 
     /**
@@ -30,7 +99,45 @@ public class EffusionCell extends Precursor {
      */
     public double getGrowthRate(long timeStamp, double substrateTemperature, double desorptionFactor) {
         Double value = getValueAtTimeStamp(timeStamp);
-        return ((value == null) || (value == 0))? 0 : (effusKoeff*Math.exp(-effusTemperature/getValueAtTimeStamp(timeStamp)) - desorptionFactor*desorpKoeff*Math.exp(desorpTemperature/substrateTemperature));
+        return ((value == null) || (value == 0))? 0 : (getEffusionRate(value) - desorptionFactor*desorpKoeff*Math.exp(desorpTemperature/substrateTemperature));
+    }
+
+    /**
+     * Returns values of growth rate for the precursor at a sorted array of timestamps taking into account desorption weighting factor.
+     * @param timeStamps timestamps in ascending order
+     * @param substrateTemperatures values of substrate temperature at the timestamps
+     * @param desorptionFactor desorption weighting factor which multiplies desorption rate
+     * @param growthRates array to be filled with the growth rates in um/hour units
+     */
+    public void getGrowthRates(long[] timeStamps, double[] substrateTemperatures, double desorptionFactor, double[] growthRates) {
+        boolean[] within = new boolean[timeStamps.length];
+        getValuesAtTimeStamps(timeStamps, growthRates, within);
+        valuesToGrowthRates(growthRates, within, substrateTemperatures, desorptionFactor, growthRates);
+    }
+
+    @Override
+    protected void valuesToGrowthRates(double[] values, boolean[] within, double[] substrateTemperatures, double[] growthRates) {
+        valuesToGrowthRates(values, within, substrateTemperatures, 1, growthRates);
+    }
+
+    /**
+     * Converts values of the cell temperature to growth rates. The desorption rate is recalculated only when the substrate temperature changes, so it is calculated once for a constant temperature.
+     */
+    private void valuesToGrowthRates(double[] values, boolean[] within, double[] substrateTemperatures, double desorptionFactor, double[] growthRates) {
+        double substrateTemperature = Double.NaN;
+        double desorptionRate = Double.NaN;
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i];
+            if (!within[i] || (value == 0)) {
+                growthRates[i] = 0;
+                continue;
+            }
+            if (Double.doubleToLongBits(substrateTemperatures[i]) != Double.doubleToLongBits(substrateTemperature)) {
+                substrateTemperature = substrateTemperatures[i];
+                desorptionRate = desorptionFactor*desorpKoeff*Math.exp(desorpTemperature/substrateTemperature);
+            }
+            growthRates[i] = getEffusionRate(value) - desorptionRate;
+        }
     }
 
 }
@@ -22,4 +22,12 @@ public class GasFlow extends Precursor {
         return ((value == null) || (value == 0))? 0 : (a + b*getValueAtTimeStamp(timeStamp));
     }
 
+    @Override
+    protected void valuesToGrowthRates(double[] values, boolean[] within, double[] substrateTemperatures, double[] growthRates) {
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i];
+            growthRates[i] = (!within[i] || (value == 0))? 0 : (a + b*value);
+        }
+    }
+
 }
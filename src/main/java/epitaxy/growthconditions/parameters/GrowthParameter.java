@@ -1,12 +1,17 @@
 package epitaxy.growthconditions.parameters;
 
+import epitaxy.growthconditions.datatreatment.PrefixSums;
 import epitaxy.growthconditions.datatreatment.Resample;
+import epitaxy.growthconditions.datatreatment.ResamplingMethod;
+import epitaxy.growthconditions.datatreatment.SwingDoor;
+import util.PipelineMetrics;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
 
+import static util.PipelineMetrics.Metric.*;
+
 /**
  * This abstract class contains calibration constants, data and settings for a growth parameters like flow or temperature
  */
@@ -17,15 +22,51 @@ public abstract class GrowthParameter {
     private String description;
     private long timeStep_ms;
     private double resamplingError;
+    private ResamplingMethod resamplingMethod = ResamplingMethod.BATCH;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long INTERVAL_ENTRY_SIZE = 72;     // estimated heap size of an entry of the intervals with boxed bounds, in bytes
+
+    // samples are stored in growable primitive columns, only the first "size" elements are valid
+    private long[] timeStamps;
+    private double[] values;
+    private int size;
+
+    // cumulative sums of the samples, they are built on demand and dropped on every change of the samples
+    private volatile PrefixSums prefixSums;
 
-    private List<Long> timeStamps;
-    private List<Double> values;
+    // state of the processing: the first "processedSize" samples are the resampled nodes, the following samples are added after the processing;
+    // a followed growth parameter also keeps the raw samples from its last but one node on to resample them together with the new samples
+    private int processedSize;
+    private boolean followed;
+    private long[] tailTimeStamps;
+    private double[] tailValues;
+    private int tailSize;
+
+    // state of the online resampling: the first "finishedSize" samples are the finished nodes, they can be followed by the end of the current segment
+    private SwingDoor swingDoor;
+    private int finishedSize;
+    private int processedFinishedSize;
+    private boolean swingDoorChanged;
 
     protected TreeMap<Long, Long> intervals;
 
+    // index of the intervals: starts in ascending order, running maximum of the ends and ranges of the samples bracketing every interval
+    private long[] intervalStarts;
+    private long[] intervalStopsMax;
+    private long[] intervalStops;
+    private int[] intervalFirstSamples;
+    private int[] intervalLastSamples;
+
+    // state of the lazy processing: a pending growth parameter is processed by the first thread accessing its nodes or intervals, see initLazily()
+    private transient volatile boolean pending;
+    private transient volatile Thread processingThread;
+    private transient Runnable rawSource;
+    private transient volatile Throwable processingFailure;    // the growth parameter stays pending if its processing has failed
+
     public GrowthParameter() {
-        timeStamps = new ArrayList<>();
-        values = new ArrayList<>();
+        timeStamps = new long[INITIAL_CAPACITY];
+        values = new double[INITIAL_CAPACITY];
         intervals = new TreeMap<>();
     }
 
@@ -36,27 +77,124 @@ public abstract class GrowthParameter {
         return name;
     }
     public long getTimeStep_ms() { return timeStep_ms; }
-    public List<Long> getTimeStamps() {
-        return timeStamps;
+    public ResamplingMethod getResamplingMethod() {
+        return (resamplingMethod == null) ? ResamplingMethod.BATCH : resamplingMethod;
     }
 
-    public List<Double> getValues() {
-        return values;
+    /**
+     * Returns a copy of the timestamp column.
+     * @return array of the timestamps of all the samples
+     */
+    public long[] getTimeStamps() {
+        process();
+        return Arrays.copyOf(timeStamps, size);
     }
 
+    /**
+     * Returns a copy of the value column.
+     * @return array of the values of all the samples
+     */
+    public double[] getValues() {
+        process();
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * It adds a sample. With the online resampling method, the sample is passed to the resampler at once, and only the finished nodes are stored.
+     * A pending growth parameter must be processed before, e.g. by getLastTimeStamp() which precedes the addition of a sample to be thinned by the time step.
+     * @param timeStamp
+     * @param value
+     */
     public void addValue(long timeStamp, double value) {
-        timeStamps.add(timeStamp);
-        values.add(value);
+        if (getResamplingMethod() == ResamplingMethod.ONLINE) {
+            if (swingDoor == null) swingDoor = new SwingDoor(resamplingError);
+            if (swingDoor.add(timeStamp, value)) {
+                size = finishedSize;        // the end of the current segment is replaced by the finished node
+                appendSample(swingDoor.getNodeTimeStamp(), swingDoor.getNodeValue());
+                finishedSize = size;
+            }
+            swingDoorChanged = true;
+            return;
+        }
+        appendSample(timeStamp, value);
+    }
+
+    private void appendSample(long timeStamp, double value) {
+        if (size == timeStamps.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            timeStamps = Arrays.copyOf(timeStamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        timeStamps[size] = timeStamp;
+        values[size] = value;
+        size++;
+        prefixSums = null;
     }
 
     public int size() {
-        return timeStamps.size();
+        process();
+        return size;
     }
+
+    /**
+     * The element accessors do not process a pending growth parameter, so size() or another entry point must be called before them, like in a loop up to size().
+     */
     public long getTimeStamp(int index) {
-        return timeStamps.get(index);
+        return timeStamps[index];
     }
     public double getValue(int index) {
-        return values.get(index);
+        return values[index];
+    }
+
+    /**
+     * It returns the timestamp of the last added sample. It differs from the timestamp of the last stored sample for the online resampling method,
+     * which does not store the raw samples.
+     * @return timestamp or 0 if there are no samples
+     */
+    public long getLastTimeStamp() {
+        process();
+        if (swingDoor != null) return swingDoor.getLastTimeStamp();
+        return (size == 0) ? 0 : timeStamps[size - 1];
+    }
+
+    /**
+     * It returns the index of the first sample whose timestamp is not less than the given one, or size() if there is no such sample.
+     * @param timeStamp
+     * @return index of the sample
+     */
+    public int getSampleIndex(long timeStamp) {
+        process();
+        return lowerBound(timeStamp, 0, size);
+    }
+
+    /**
+     * It estimates the heap size of the samples, the prefix sums, the intervals and their index in bytes. The arrays are counted by their capacities.
+     * Unlike the other accessors, it does not process a pending growth parameter, so the raw samples waiting for the processing are counted instead of the nodes.
+     * @return number of bytes
+     */
+    public long estimateHeapSize() {
+        long bytes = (long) Long.BYTES*timeStamps.length + (long) Double.BYTES*values.length;
+        if (tailTimeStamps != null) bytes += (long) Long.BYTES*tailTimeStamps.length + (long) Double.BYTES*tailValues.length;
+        PrefixSums sums = prefixSums;
+        if (sums != null) bytes += sums.getHeapSize();
+        if (intervalStarts != null) bytes += (long) Long.BYTES*(intervalStarts.length + intervalStopsMax.length + intervalStops.length)
+                + (long) Integer.BYTES*(intervalFirstSamples.length + intervalLastSamples.length);
+        return bytes + INTERVAL_ENTRY_SIZE*intervals.size();
+    }
+
+    /**
+     * It returns cumulative sums of the samples which allow to calculate statistics of the samples within any range in O(1).
+     * The sums are calculated at the first call after a change of the samples.
+     * @return a PrefixSums object
+     */
+    public PrefixSums getPrefixSums() {
+        process();
+        PrefixSums sums = prefixSums;
+        if (sums == null) {
+            sums = new PrefixSums(timeStamps, values, size);
+            prefixSums = sums;
+        }
+        return sums;
     }
 
 
@@ -64,70 +202,329 @@ public abstract class GrowthParameter {
      * It processes the GrowthParameter that includes resampling of its values by a piecewise linear approximation and determination of active intervals
      */
     public void init() {
+        Runnable source = rawSource;
+        rawSource = null;
+        if (source != null) source.run();
+        processedSize = 0;
+        tailSize = 0;
+        swingDoorChanged = (swingDoor != null);
+        int rawSize = size;
+        long start = PipelineMetrics.start();
         resample();
-        determineIntervals();
+        start = PipelineMetrics.stop(RESAMPLING_NANOS, name, start);
+        determineIntervals(Long.MIN_VALUE);
+        start = PipelineMetrics.stop(INTERVALS_NANOS, name, start);
+        indexIntervals();
+        PipelineMetrics.stop(INDEXING_NANOS, name, start);
+        countProcessing(rawSize, 0, 0);
+    }
+
+    /**
+     * It processes the samples (and the shutter events of a Precursor) added after the previous call of init() or update(). The previous nodes are left except for the last ones,
+     * so the cost of an update depends on the amount of the new data rather than on the whole number of the samples. It is intended for the growth parameters of a running growth,
+     * see setFollowed().
+     */
+    public void update() {
+        process();
+        int rawSize = size - processedSize;
+        int previousNodes = processedSize;
+        int previousIntervals = intervals.size();
+        long start = PipelineMetrics.start();
+        long changedTimeStamp = Math.min(resample(), getFirstUnprocessedTimeStamp());
+        start = PipelineMetrics.stop(RESAMPLING_NANOS, name, start);
+        if (changedTimeStamp == Long.MAX_VALUE) return;
+        determineIntervals(changedTimeStamp);
+        start = PipelineMetrics.stop(INTERVALS_NANOS, name, start);
+        indexIntervals();
+        PipelineMetrics.stop(INDEXING_NANOS, name, start);
+        countProcessing(rawSize, previousNodes, previousIntervals);
+    }
+
+    /**
+     * It adds the numbers of the new samples, nodes and intervals to the metrics, so the sums of the nodes and the intervals over the updates are their final numbers.
+     */
+    private void countProcessing(int rawSize, int previousNodes, int previousIntervals) {
+        if (!PipelineMetrics.isMetricsEnabled()) return;
+        PipelineMetrics.add(RAW_SAMPLES, name, rawSize);
+        PipelineMetrics.add(NODES, name, size - previousNodes);
+        PipelineMetrics.add(INTERVALS, name, intervals.size() - previousIntervals);
+    }
+
+    /**
+     * It makes the growth parameter keep the raw samples of its last segment after processing, so that update() resamples the last segment together with the new samples.
+     * Otherwise update() starts the new segments from the last node.
+     * @param followed "true" - the raw samples of the last segment are kept
+     */
+    public void setFollowed(boolean followed) {
+        this.followed = followed;
+        if (!followed) {
+            tailTimeStamps = null;
+            tailValues = null;
+            tailSize = 0;
+        }
     }
 
     /**
-     * Makes a resampling of the values using a piecewise linear approximation by least-squares method
+     * It returns the timestamp up to which the nodes and the bounds of the intervals are final, provided that the new samples are later than the existing ones.
+     * The next processing resamples the new samples together with the last segment, and a followed growth parameter re-fits its last two segments from
+     * the raw samples (see resample()), so the nodes following the first re-fitted node can be moved, added or removed.
+     * @return timestamp or Long.MAX_VALUE if the growth parameter has no samples
      */
-    private void resample() {
-        List<Integer> nodes =  Resample.getNodes(timeStamps, values, resamplingError);
-        if ( nodes == null ) return;
-        List<Long> resampledTimeStamps = new ArrayList<>(nodes.size());
-        List<Double> resampledValues = new ArrayList<>(nodes.size());
-        for (int node : nodes) {
-            resampledTimeStamps.add(timeStamps.get(node));
-            resampledValues.add(values.get(node));
+    public long getSettledTimeStamp() {
+        process();
+        if (size == 0) return Long.MAX_VALUE;
+        if (processedSize == 0) return timeStamps[0] - 1;
+        if (tailSize > 0) return timeStamps[processedSize - 2];     // the re-fitted tail starts at the last but one node which is left in place
+        return timeStamps[processedSize - 1] - 1;
+    }
+
+    /**
+     * Makes a resampling of the values using a piecewise linear approximation by least-squares method. The samples added after the previous resampling are resampled
+     * together with the raw samples of the last segment (or with the last node if the raw samples are not kept), and the other nodes are left as they are.
+     * @return timestamp from which the samples have been changed or Long.MAX_VALUE if they have not been changed
+     */
+    private long resample() {
+        if (getResamplingMethod() == ResamplingMethod.ONLINE) return resampleOnline();
+        if (size == processedSize) return Long.MAX_VALUE;
+        int kept;       // number of the nodes which are left
+        long[] rawTimeStamps;
+        double[] rawValues;
+        int rawSize;
+        if (processedSize == 0) {
+            kept = 0;
+            rawTimeStamps = timeStamps;
+            rawValues = values;
+            rawSize = size;
+        }
+        else {
+            long[] headTimeStamps = (tailSize > 0) ? tailTimeStamps : timeStamps;
+            double[] headValues = (tailSize > 0) ? tailValues : values;
+            int headFrom = (tailSize > 0) ? 0 : processedSize - 1;
+            int headSize = (tailSize > 0) ? tailSize : 1;
+            kept = (tailSize > 0) ? processedSize - 2 : processedSize - 1;
+            rawSize = headSize + size - processedSize;
+            rawTimeStamps = new long[rawSize];
+            rawValues = new double[rawSize];
+            System.arraycopy(headTimeStamps, headFrom, rawTimeStamps, 0, headSize);
+            System.arraycopy(headValues, headFrom, rawValues, 0, headSize);
+            System.arraycopy(timeStamps, processedSize, rawTimeStamps, headSize, size - processedSize);
+            System.arraycopy(values, processedSize, rawValues, headSize, size - processedSize);
+        }
+        if (rawSize < 2) return Long.MAX_VALUE;
+        int[] nodes =  Resample.getNodes(rawTimeStamps, rawValues, rawSize, resamplingError);
+        long[] resampledTimeStamps = Arrays.copyOf(timeStamps, kept + nodes.length);
+        double[] resampledValues = Arrays.copyOf(values, kept + nodes.length);
+        int count = kept;
+        int previousNode = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if ((i > 0) && (nodes[i] == nodes[i-1])) continue;     // the rough approximation can select a point twice
+            if (i > 0) previousNode = nodes[i-1];
+            resampledTimeStamps[count] = rawTimeStamps[nodes[i]];
+            resampledValues[count] = rawValues[nodes[i]];
+            count++;
+        }
+        if (followed) {
+            int tailFrom = previousNode;
+            tailSize = rawSize - tailFrom;
+            tailTimeStamps = Arrays.copyOfRange(rawTimeStamps, tailFrom, rawSize);
+            tailValues = Arrays.copyOfRange(rawValues, tailFrom, rawSize);
         }
         timeStamps = resampledTimeStamps;
         values = resampledValues;
+        size = count;
+        processedSize = size;
+        prefixSums = null;
+        return rawTimeStamps[0];
+    }
+
+    /**
+     * It completes the online resampling: the finished nodes are followed by the end of the current segment, as if the stream of the samples stopped at the last sample.
+     * The end is replaced at the next processing.
+     * @return timestamp from which the samples have been changed or Long.MAX_VALUE if they have not been changed
+     */
+    private long resampleOnline() {
+        if (!swingDoorChanged) return Long.MAX_VALUE;
+        long changedTimeStamp = (processedFinishedSize == 0) ? Long.MIN_VALUE : timeStamps[processedFinishedSize - 1];
+        size = finishedSize;
+        if (swingDoor.hasSegment()) appendSample(swingDoor.getEndTimeStamp(), swingDoor.getEndValue());
+        processedSize = size;
+        processedFinishedSize = finishedSize;
+        swingDoorChanged = false;
+        return changedTimeStamp;
     }
 
     /**
      * It determines active intervals. Within an active interval, the value is either constant or change linearly. If the growth parameters has a shutter, an interval can be only active if the shutter is opened (i.e. "true").
+     * The intervals beginning before the given timestamp are left as they are.
+     * @param fromTimeStamp timestamp from which the samples have been changed
      */
-    void determineIntervals() {
-        for (int i = 0; i < (timeStamps.size() - 1); i++) {
-            intervals.put(timeStamps.get(i), timeStamps.get(i+1));
+    void determineIntervals(long fromTimeStamp) {
+        intervals.tailMap(fromTimeStamp, true).clear();
+        for (int i = lowerBound(fromTimeStamp, 0, size); i < (size - 1); i++) {
+            intervals.put(timeStamps[i], timeStamps[i+1]);
         }
     }
 
+    /**
+     * It returns the earliest timestamp of the data other than samples added after the previous processing, e.g. of the shutter events.
+     * @return timestamp or Long.MAX_VALUE if there is no such data
+     */
+    long getFirstUnprocessedTimeStamp() {
+        return Long.MAX_VALUE;
+    }
+
     /**
      * It return active intervals for the growth parameters in the form of a TreeMap. Each <Long, Long> pair in the map contains a start timestamp and an end timestamp of an interval as a key and a value respectively.
      * @return
      */
     public TreeMap<Long, Long> getIntervals() {
+        process();
         return intervals;
     }
 
+    /**
+     * It defers the processing of the GrowthParameter (see init()) until the first access to its nodes or intervals, so that the growth parameters which are not queried
+     * are never processed. The first accessing thread processes the growth parameter, and the threads accessing it concurrently wait for the processing to finish.
+     * The accessors called by the processing itself see the samples as they are. If the processing fails, the growth parameter is left pending and every following access
+     * throws an IllegalStateException caused by the failure, because the raw samples are consumed by the failed processing.
+     * @param rawSource loader adding the raw samples to the growth parameter before the processing or null if the samples are added already
+     */
+    public void initLazily(Runnable rawSource) {
+        this.rawSource = rawSource;
+        processingFailure = null;
+        pending = true;
+    }
+
+    /**
+     * It returns "true" if the processing of the GrowthParameter is deferred and has not been made successfully yet.
+     */
+    public boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * It processes the GrowthParameter if its processing is deferred by initLazily(). Otherwise it does nothing.
+     * It is called by the entry points only, i.e. size(), getSampleIndex(), the accessors of the columns, the intervals and the values at timestamps, so a processed growth parameter
+     * costs a read of a volatile flag per query rather than per sample.
+     */
+    public void process() {
+        if (pending && (processingThread != Thread.currentThread())) processPending();
+    }
+
+    private synchronized void processPending() {
+        if (!pending) return;
+        if (processingFailure != null) throw new IllegalStateException("Processing of " + name + " has failed", processingFailure);
+        processingThread = Thread.currentThread();
+        try {
+            init();
+            pending = false;
+        }
+        catch (RuntimeException | Error e) {
+            processingFailure = e;
+            throw e;
+        }
+        finally {
+            processingThread = null;
+        }
+    }
+
+    /**
+     * It builds the index of the intervals which is used by getValueAtTimeStamp(). The method must be called after every change of the intervals.
+     */
+    protected void indexIntervals() {
+        int count = intervals.size();
+        intervalStarts = new long[count];
+        intervalStops = new long[count];
+        intervalStopsMax = new long[count];
+        intervalFirstSamples = new int[count];
+        intervalLastSamples = new int[count];
+        int k = 0;
+        long stopMax = Long.MIN_VALUE;
+        for (Map.Entry<Long, Long> interval : intervals.entrySet()) {
+            intervalStarts[k] = interval.getKey();
+            intervalStops[k] = interval.getValue();
+            stopMax = Math.max(stopMax, interval.getValue());
+            intervalStopsMax[k] = stopMax;
+            intervalFirstSamples[k] = lowerBound(interval.getKey(), 0, size);
+            intervalLastSamples[k] = lowerBound(interval.getValue(), intervalFirstSamples[k], size);
+            k++;
+        }
+    }
+
     /**
      * It returns Value taken at a certain timestamp. If the timestamp is out of the intervals, the function returns null.
+     * The containing interval is found by a binary search over the interval index, then the samples are searched within that interval only.
      * @param timeStamp
      * @return Double Value or null.
      */
     public Double getValueAtTimeStamp(long timeStamp) {
-        for (Map.Entry<Long, Long> interval : intervals.entrySet()) {
-            if ((timeStamp >= interval.getKey()) && (timeStamp <= interval.getValue())) {
-                int startIndex = 0;
-                int stopIndex = this.size() - 1;
-                while ((stopIndex - startIndex) > 1) {
-                    int half = (int) (startIndex + stopIndex)/2;
-                    long timeStampAtHalf = timeStamps.get(half);
-                    if (timeStamp <= timeStampAtHalf) stopIndex = half;
-                    else if (timeStamp > timeStampAtHalf) startIndex = half;
-                }
-                long startTimeStamp = getTimeStamp(startIndex);
-                long stopTimeStamp = getTimeStamp(stopIndex);
-                double startValue = getValue(startIndex);
-                double stopValue = getValue(stopIndex);
-                return (startValue + (stopValue - startValue)*(timeStamp - startTimeStamp)/(stopTimeStamp - startTimeStamp));
+        process();
+        if ((intervalStarts == null) || (intervalStarts.length == 0)) return null;
+        int k = Arrays.binarySearch(intervalStarts, timeStamp);
+        if (k < 0) k = -k - 2;     // the last interval starting before the timestamp
+        if ((k < 0) || (intervalStopsMax[k] < timeStamp)) return null;
+        int lastSample = (timeStamp <= intervalStops[k]) ? intervalLastSamples[k] : size;
+        return interpolate(lowerBound(timeStamp, intervalFirstSamples[k], lastSample), timeStamp);
+    }
+
+    /**
+     * It returns values taken at a sorted array of timestamps in a single merged sweep over the intervals and the samples.
+     * @param timeStamps timestamps in ascending order
+     * @param result array to be filled with the values; an element is set to NaN if its timestamp is out of the intervals
+     */
+    public void getValuesAtTimeStamps(long[] timeStamps, double[] result) {
+        getValuesAtTimeStamps(timeStamps, result, null);
+    }
+
+    /**
+     * It returns values taken at a sorted array of timestamps and marks the timestamps within the intervals, which tells a NaN sample from a timestamp out of the intervals.
+     * @param timeStamps timestamps in ascending order
+     * @param result array to be filled with the values; an element is set to NaN if its timestamp is out of the intervals
+     * @param within array to be filled with "true" for the timestamps within the intervals or null
+     */
+    public void getValuesAtTimeStamps(long[] timeStamps, double[] result, boolean[] within) {
+        process();
+        int count = (intervalStarts == null) ? 0 : intervalStarts.length;
+        int k = -1;
+        int sample = 0;
+        for (int i = 0; i < timeStamps.length; i++) {
+            long timeStamp = timeStamps[i];
+            while ((k + 1 < count) && (intervalStarts[k + 1] <= timeStamp)) k++;
+            boolean inside = (k >= 0) && (intervalStopsMax[k] >= timeStamp);
+            if (within != null) within[i] = inside;
+            if (!inside) {
+                result[i] = Double.NaN;
+                continue;
             }
+            while ((sample < size) && (this.timeStamps[sample] < timeStamp)) sample++;
+            result[i] = interpolate(sample, timeStamp);
         }
-        return null;
     }
 
+    /**
+     * It returns the index of the first sample within [from, to) whose timestamp is not less than the given one, or "to" if there is no such sample.
+     */
+    private int lowerBound(long timeStamp, int from, int to) {
+        while (from < to) {
+            int half = (from + to) >>> 1;
+            if (timeStamps[half] < timeStamp) from = half + 1;
+            else to = half;
+        }
+        return from;
+    }
 
-
+    /**
+     * It linearly interpolates (or extrapolates at the ends) the samples around the timestamp.
+     * @param lowerBound index of the first sample whose timestamp is not less than the given one
+     */
+    private double interpolate(int lowerBound, long timeStamp) {
+        int stopIndex = (size == 1) ? 0 : Math.max(1, Math.min(size - 1, lowerBound));
+        int startIndex = (size == 1) ? 0 : stopIndex - 1;
+        long startTimeStamp = timeStamps[startIndex];
+        long stopTimeStamp = timeStamps[stopIndex];
+        double startValue = values[startIndex];
+        double stopValue = values[stopIndex];
+        return (startValue + (stopValue - startValue)*(timeStamp - startTimeStamp)/(stopTimeStamp - startTimeStamp));
+    }
 
 }
@@ -11,6 +11,9 @@ import java.util.List;
 public abstract class Precursor extends GrowthParameter {
     protected List<Long> shutterTime;
     protected List<Boolean> shutterState; // "true" - shutter switch on; "false" - shutter switch off
+    private int processedShutterEvents;
+
+    private static final long SHUTTER_EVENT_SIZE = 32;     // estimated heap size of a boxed timestamp and the references to it and to the state, in bytes
 
     public Precursor() {
         super();
@@ -18,26 +21,67 @@ public abstract class Precursor extends GrowthParameter {
         shutterState = new ArrayList<>();
     }
 
+    /**
+     * It determines active intervals within the periods of the opened shutter. The shutter events and the sample timestamps are merged in a single sweep,
+     * so the complexity is O(shutter events + samples). Only the periods ending at or after the given timestamp are processed.
+     * @param fromTimeStamp timestamp from which the samples or the shutter events have been changed
+     */
     @Override
-    void determineIntervals() {
+    void determineIntervals(long fromTimeStamp) {
         int shutterEventsNum = shutterTime.size();
-        for (int i = 0; i < shutterEventsNum; i++) {
+        int size = size();
+        int firstPeriod = 0;
+        while ((firstPeriod < shutterEventsNum) && (!shutterState.get(firstPeriod) || ((firstPeriod < shutterEventsNum - 1) && (shutterTime.get(firstPeriod + 1) < fromTimeStamp)))) firstPeriod++;
+        int sample = 0;
+        if (firstPeriod < shutterEventsNum) {
+            intervals.tailMap(shutterTime.get(firstPeriod), true).clear();
+            sample = getSampleIndex(shutterTime.get(firstPeriod));
+        }
+        processedShutterEvents = shutterEventsNum;
+        for (int i = firstPeriod; i < shutterEventsNum; i++) {
             if (shutterState.get(i) == true) {
-                List<Long> points = new ArrayList<>();
-                points.add(shutterTime.get(i));
-                long last = (i < (shutterEventsNum - 1)) ? shutterTime.get(i+1) : getTimeStamp(this.size() - 1);
-                for (int j = 0; j < this.size(); j++)
-                    if ((getTimeStamp(j) > shutterTime.get(i)) && (getTimeStamp(j) < last))
-                        points.add(getTimeStamp(j));
-                points.add(last);
-                for (int j = 0; j < (points.size() - 1); j++) {
-                    intervals.put(points.get(j), points.get(j+1));
+                long first = shutterTime.get(i);
+                if ((i == (shutterEventsNum - 1)) && (size == 0)) break;
+                long last = (i < (shutterEventsNum - 1)) ? shutterTime.get(i+1) : getTimeStamp(size - 1);
+                while ((sample > 0) && (getTimeStamp(sample - 1) > first)) sample--;
+                while ((sample < size) && (getTimeStamp(sample) <= first)) sample++;
+                long point = first;
+                for (; (sample < size) && (getTimeStamp(sample) < last); sample++) {
+                    intervals.put(point, getTimeStamp(sample));
+                    point = getTimeStamp(sample);
                 }
+                intervals.put(point, last);
             }
         }
     }
 
+    @Override
+    long getFirstUnprocessedTimeStamp() {
+        return (processedShutterEvents < shutterTime.size()) ? shutterTime.get(processedShutterEvents) : Long.MAX_VALUE;
+    }
+
+    /**
+     * It returns the timestamp up to which the bounds of the intervals are final. If the shutter is opened after the last sample, the opening is not final,
+     * because the intervals of the period appear only with the following samples.
+     */
+    @Override
+    public long getSettledTimeStamp() {
+        long settledTimeStamp = super.getSettledTimeStamp();
+        int last = shutterTime.size() - 1;
+        int size = size();
+        if ((last >= 0) && shutterState.get(last) && ((size == 0) || (getTimeStamp(size - 1) <= shutterTime.get(last))))
+            settledTimeStamp = Math.min(settledTimeStamp, shutterTime.get(last) - 1);
+        if (processedShutterEvents <= last) settledTimeStamp = Math.min(settledTimeStamp, shutterTime.get(processedShutterEvents) - 1);
+        return settledTimeStamp;
+    }
 
+    /**
+     * It estimates the heap size of the growth parameter including the shutter events.
+     */
+    @Override
+    public long estimateHeapSize() {
+        return super.estimateHeapSize() + SHUTTER_EVENT_SIZE*shutterTime.size();
+    }
 
     /**
      * This method adds an event when shutte changes its state
@@ -73,4 +117,26 @@ public abstract class Precursor extends GrowthParameter {
      */
     abstract protected double getGrowthRate(long timeStamp, double substrateTemperature);
 
-}
\ No newline at end of file
+    /**
+     * Returns values of growth rate for the precursor at a sorted array of timestamps. The values of the precursor are taken in a single sweep over the intervals.
+     * @param timeStamps timestamps in ascending order
+     * @param substrateTemperatures values of substrate temperature at the timestamps
+     * @param growthRates array to be filled with the growth rates in um/hour units
+     */
+    public void getGrowthRates(long[] timeStamps, double[] substrateTemperatures, double[] growthRates) {
+        boolean[] within = new boolean[timeStamps.length];
+        getValuesAtTimeStamps(timeStamps, growthRates, within);
+        valuesToGrowthRates(growthRates, within, substrateTemperatures, growthRates);
+    }
+
+    /**
+     * Converts values of the precursor to growth rates like getGrowthRate() does: the growth rate is 0 out of the intervals or for a zero value, and a NaN value
+     * gives a NaN growth rate. The arrays of values and growth rates can be the same.
+     * @param values values of the precursor
+     * @param within "true" for the values within the intervals of the precursor
+     * @param substrateTemperatures values of substrate temperature
+     * @param growthRates array to be filled with the growth rates in um/hour units
+     */
+    abstract protected void valuesToGrowthRates(double[] values, boolean[] within, double[] substrateTemperatures, double[] growthRates);
+
+}
@@ -2,6 +2,7 @@ package epitaxy.structure;
 
 import epitaxy.growthconditions.Data;
 import epitaxy.growthconditions.parameters.GrowthParameter;
+import util.PipelineMetrics;
 
 import java.util.*;
 
@@ -13,29 +14,58 @@ public class Heterostructure {
 
 
     private List<Layer> layers;
+    private Long lastLayerBound;    // the latest bound found, it is the ending of the last layer if there are layers
     Data data;
 
     public Heterostructure(Data data) {
+        this(data, Long.MAX_VALUE);
+    }
+
+    /**
+     * It builds the heterostructure of a running growth from the layers which end not later than the given timestamp. The heterostructure can be extended later by extend().
+     * @param data
+     * @param settledTimeStamp timestamp up to which the intervals of the growth parameters can not be changed anymore
+     */
+    public Heterostructure(Data data, long settledTimeStamp) {
         this.data = data;
-        initHeterostructure();
+        initHeterostructure(settledTimeStamp);
     }
 
     /**
      * It determines timestamps corresponding to beginning and ending of every layer and builds the heterostructure, i.e. creates a List of layers.
      */
-    private void initHeterostructure() {
+    private void initHeterostructure(long settledTimeStamp) {
+        data.processRequiredParameters();
         layers = new ArrayList<>();
-        Set<Long> layerBounds = new TreeSet<>();
+        extend(settledTimeStamp);
+    }
+
+    /**
+     * It appends the layers which begin at the ending of the last layer and end not later than the given timestamp. Only the intervals after the last layer are looked through,
+     * so the cost depends on the number of the new layers. A layer also depends on the data up to the ending of the window of its pyrometer temperature (see LayerContext),
+     * so the layers whose window does not end by the given timestamp are left for the following extensions.
+     * @param settledTimeStamp timestamp up to which the intervals of the growth parameters can not be changed anymore
+     * @return List of the appended layers
+     */
+    public List<Layer> extend(long settledTimeStamp) {
+        long start = PipelineMetrics.start();
+        TreeSet<Long> layerBounds = new TreeSet<>();
+        long fromTimeStamp = (lastLayerBound == null) ? Long.MIN_VALUE : lastLayerBound;
+        if (lastLayerBound != null) layerBounds.add(lastLayerBound);
      //   List<GrowthParameter> activeParameters = new ArrayList<>();
         List<GrowthParameter> growthParameters = data.getGrowthParameters();
         List<Integer> activeParametersId = data.activeParametersId;
 
         for (GrowthParameter growthParameter : growthParameters) {
             if (activeParametersId.contains(growthParameter.getId())) {
-                Map<Long, Long> intervals = growthParameter.getIntervals();
+                TreeMap<Long, Long> intervals = growthParameter.getIntervals();
                 if (intervals != null) {
-                    layerBounds.addAll(intervals.keySet());
-                    layerBounds.addAll(intervals.values());
+                    Map.Entry<Long, Long> previous = intervals.lowerEntry(fromTimeStamp);
+                    if ((previous != null) && (previous.getValue() >= fromTimeStamp) && (previous.getValue() <= settledTimeStamp)) layerBounds.add(previous.getValue());
+                    for (Map.Entry<Long, Long> interval : intervals.subMap(fromTimeStamp, true, settledTimeStamp, true).entrySet()) {
+                        layerBounds.add(interval.getKey());
+                        if (interval.getValue() <= settledTimeStamp) layerBounds.add(interval.getValue());
+                    }
                 }
             }
         }
@@ -60,10 +90,20 @@ public class Heterostructure {
         }
 */
         Long [] layerBoundsArray = layerBounds.toArray(new Long[layerBounds.size()]);
-        for (int i = 0; i < (layerBoundsArray.length - 1); i++) {
-            layers.add(new Layer(i, layerBoundsArray[i], layerBoundsArray[i + 1], data));
+        int firstLayer = layers.size();
+        PipelineMetrics.stop(PipelineMetrics.Metric.LAYER_BOUNDS_NANOS, null, start);
+        int lastBound = layerBoundsArray.length - 1;
+        for (int i = 0; i < lastBound; i++) {
+            if ((settledTimeStamp != Long.MAX_VALUE)
+                    && (LayerContext.getPyrometerWindowStop(data, Layer.getCenterTimeStamp(layerBoundsArray[i], layerBoundsArray[i + 1])) > settledTimeStamp)) {
+                lastBound = i;
+                break;
+            }
+            layers.add(new Layer(layers.size(), layerBoundsArray[i], layerBoundsArray[i + 1], data));
         }
-
+        PipelineMetrics.add(PipelineMetrics.Metric.LAYERS, null, layers.size() - firstLayer);
+        if (lastBound >= 0) lastLayerBound = layerBoundsArray[lastBound];
+        return new ArrayList<>(layers.subList(firstLayer, layers.size()));
     }
 
     public List<Layer> getLayers() {
@@ -2,10 +2,15 @@ package epitaxy.structure;
 
 import epitaxy.growthconditions.Data;
 import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.growthconditions.parameters.Precursor;
+import util.PipelineMetrics;
 import util.Time;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 /**
@@ -23,7 +28,9 @@ public class Layer {
     private double nominalThickness;
     private double realThickness;
 
-    private static final int GRID_SIZE = 100; // The grid size of 100 is enough for numerical integration of growth rate.
+    private static final double MILLIS_PER_HOUR = 3600000.0;
+    private static final int MAX_INTEGRATION_DEPTH = 24;      // a segment is not divided into parts shorter than 2^-24 of its length
+    private static final long MIN_INTEGRATION_STEP = 2;       // ms
 
     private static final double MOLE_FRACTION_INACCURACY = 0.01;
 
@@ -37,23 +44,117 @@ public class Layer {
         initLayer();
     }
 
+    static long getCenterTimeStamp(long startTimeStamp, long stopTimeStamp) {
+        return (long) (startTimeStamp + stopTimeStamp)/2;
+    }
+
     /**
      * Inits main parameters of the layer.
      */
     private void initLayer() {
-        long centerLayerTimeStamp = (long) (startTimeStamp + stopTimeStamp)/2;
-        startMaterial = new Material(data, startTimeStamp, centerLayerTimeStamp);
-        stopMaterial = new Material(data, stopTimeStamp, centerLayerTimeStamp);
-        nominalThickness = 0;
-        long stepTime = (long)(stopTimeStamp - startTimeStamp)/GRID_SIZE;
-        long startTime = startTimeStamp;
-        for (int i = 0; i < GRID_SIZE; i++) {
-            double startGrowthRate = new Material(data, startTime + i*stepTime, centerLayerTimeStamp).getGrowthRate();
-            double stopGrowthRate = new Material(data, startTime + (i+1)*stepTime, centerLayerTimeStamp).getGrowthRate();
-            nominalThickness =+ stepTime * (startGrowthRate + stopGrowthRate)/2;
+        long centerLayerTimeStamp = getCenterTimeStamp(startTimeStamp, stopTimeStamp);
+        long start = PipelineMetrics.start();
+        LayerContext context = new LayerContext(data, centerLayerTimeStamp);
+        start = PipelineMetrics.stop(PipelineMetrics.Metric.LAYER_CONTEXT_NANOS, null, start);
+        startMaterial = new Material(context, startTimeStamp);
+        stopMaterial = new Material(context, stopTimeStamp);
+        nominalThickness = integrateGrowthRate(context);
+        PipelineMetrics.stop(PipelineMetrics.Metric.INTEGRATION_NANOS, null, start);
+    }
+
+    /**
+     * It integrates growth rate over the layer by adaptive Simpson's method. The values of the precursors are linear between their nodes,
+     * so the layer is split at the nodes and every segment is integrated separately: a segment with a constant or linear growth rate needs a single Simpson's step,
+     * and the other ones are refined only where the step does not reach the tolerance.
+     * The tolerance is the relative error of the thickness set by the settings (Data.thicknessError).
+     * @param context properties of the layer
+     * @return thickness in micrometers
+     */
+    private double integrateGrowthRate(LayerContext context) {
+        if (stopTimeStamp <= startTimeStamp) return 0;
+        long[] breakpoints = getBreakpoints();
+        int segments = breakpoints.length - 1;
+        double[] startRates = new double[segments];
+        double[] middleRates = new double[segments];
+        double[] stopRates = new double[segments];
+        double[] estimates = new double[segments];
+        double stopRate = getGrowthRate(context, breakpoints[0]);
+        double totalEstimate = 0;
+        for (int i = 0; i < segments; i++) {
+            startRates[i] = stopRate;
+            middleRates[i] = getGrowthRate(context, middle(breakpoints[i], breakpoints[i + 1]));
+            stopRate = getGrowthRate(context, breakpoints[i + 1]);
+            stopRates[i] = stopRate;
+            estimates[i] = simpson(breakpoints[i], middle(breakpoints[i], breakpoints[i + 1]), breakpoints[i + 1], startRates[i], middleRates[i], stopRates[i]);
+            totalEstimate += estimates[i];
+        }
+        double tolerance = data.thicknessError*Math.abs(totalEstimate);
+        double thickness = 0;
+        for (int i = 0; i < segments; i++) {
+            double segmentTolerance = tolerance*(breakpoints[i + 1] - breakpoints[i])/(stopTimeStamp - startTimeStamp);
+            thickness += adaptiveSimpson(context, breakpoints[i], breakpoints[i + 1], startRates[i], middleRates[i], stopRates[i], estimates[i], segmentTolerance, MAX_INTEGRATION_DEPTH);
+        }
+        return thickness/MILLIS_PER_HOUR;
+    }
+
+    /**
+     * It returns the bounds of the layer and the timestamps within the layer where the values of the precursors may break, i.e. the bounds of their intervals.
+     */
+    private long[] getBreakpoints() {
+        TreeSet<Long> breakpoints = new TreeSet<>();
+        breakpoints.add(startTimeStamp);
+        breakpoints.add(stopTimeStamp);
+        for (GrowthParameter growthParameter : data.getGrowthParameters()) {
+            if (!(growthParameter instanceof Precursor)) continue;
+            TreeMap<Long, Long> intervals = growthParameter.getIntervals();
+            Map.Entry<Long, Long> previous = intervals.floorEntry(startTimeStamp);
+            if ((previous != null) && (previous.getValue() > startTimeStamp) && (previous.getValue() < stopTimeStamp)) breakpoints.add(previous.getValue());
+            for (Map.Entry<Long, Long> interval : intervals.subMap(startTimeStamp, false, stopTimeStamp, false).entrySet()) {
+                breakpoints.add(interval.getKey());
+                if (interval.getValue() < stopTimeStamp) breakpoints.add(interval.getValue());
             }
+        }
+        long[] result = new long[breakpoints.size()];
+        int i = 0;
+        for (long breakpoint : breakpoints) result[i++] = breakpoint;
+        return result;
     }
 
+    /**
+     * It integrates growth rate over a segment recursively. The segment is divided in halves until Simpson's rule for the halves differs from the one for the whole segment less than 15 tolerances.
+     */
+    private double adaptiveSimpson(LayerContext context, long start, long stop, double startRate, double middleRate, double stopRate, double estimate, double tolerance, int depth) {
+        long middle = middle(start, stop);
+        if ((depth == 0) || (middle - start < MIN_INTEGRATION_STEP) || (stop - middle < MIN_INTEGRATION_STEP)) return estimate;
+        long leftMiddle = middle(start, middle);
+        long rightMiddle = middle(middle, stop);
+        double leftMiddleRate = getGrowthRate(context, leftMiddle);
+        double rightMiddleRate = getGrowthRate(context, rightMiddle);
+        double left = simpson(start, leftMiddle, middle, startRate, leftMiddleRate, middleRate);
+        double right = simpson(middle, rightMiddle, stop, middleRate, rightMiddleRate, stopRate);
+        double difference = left + right - estimate;
+        if (Math.abs(difference) <= 15*tolerance) return left + right + difference/15;
+        return adaptiveSimpson(context, start, middle, startRate, leftMiddleRate, middleRate, left, tolerance/2, depth - 1)
+                + adaptiveSimpson(context, middle, stop, middleRate, rightMiddleRate, stopRate, right, tolerance/2, depth - 1);
+    }
+
+    /**
+     * Simpson's rule for three points, the middle point may be shifted from the center of the segment by rounding of the timestamp.
+     */
+    private static double simpson(long start, long middle, long stop, double startRate, double middleRate, double stopRate) {
+        double h1 = middle - start;
+        double h2 = stop - middle;
+        if ((h1 == 0) || (h2 == 0)) return (h1 + h2)*(startRate + stopRate)/2;
+        return (h1 + h2)/6*((2 - h2/h1)*startRate + (h1 + h2)*(h1 + h2)/(h1*h2)*middleRate + (2 - h1/h2)*stopRate);
+    }
+
+    private static long middle(long start, long stop) {
+        return start + (stop - start)/2;
+    }
+
+    private static double getGrowthRate(LayerContext context, long timeStamp) {
+        return new Material(context, timeStamp).getGrowthRate();
+    }
 
     /**
      * Converts parameters of the layer to a human-readable format.
@@ -75,4 +176,12 @@ public class Layer {
         return stopMaterial;
     }
 
+    /**
+     * Returns thickness of the layer calculated by integration of growth rate.
+     * @return thickness in micrometers
+     */
+    public double getNominalThickness() {
+        return nominalThickness;
+    }
+
 }
\ No newline at end of file
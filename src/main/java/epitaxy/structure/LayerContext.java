@@ -0,0 +1,113 @@
+package epitaxy.structure;
+
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.datatreatment.Approximation;
+import epitaxy.growthconditions.parameters.GrowthParameter;
+
+import static epitaxy.structure.MaterialType.*;
+
+/**
+ * This class contains properties of a layer which do not depend on time within the layer: the set of the present precursors, the type of the material
+ * and the approximation of the substrate temperature. They are determined once per layer and shared by all the materials of the layer.
+ */
+class LayerContext {
+
+    final Data data;
+    final long centerLayerTimeStamp;
+
+    final boolean indium;
+    final boolean aluminium;
+    final boolean gallium;
+    final boolean silicon;
+    final boolean magnesium;
+    final boolean nitrogenPlasma;
+    final boolean ammonia;
+    final boolean silane;
+
+    final MaterialType materialType;
+
+    private final boolean constantPyrometerTemperature;
+    private final double pyrometerTemperature;
+    private final Approximation.LinearFit pyrometerFit;
+
+    /**
+     * @param data
+     * @param centerLayerTimeStamp timestamp at which the presence of the precursors is checked
+     */
+    LayerContext(Data data, long centerLayerTimeStamp) {
+        this.data = data;
+        this.centerLayerTimeStamp = centerLayerTimeStamp;
+        indium = isPresent(data.indium);
+        aluminium = isPresent(data.aluminium);
+        gallium = isPresent(data.gallium);
+        silicon = isPresent(data.silicon);
+        magnesium = isPresent(data.magnesium);
+        nitrogenPlasma = isPresent(data.nitrogenPlasma);
+        ammonia = isPresent(data.ammonia);
+        silane = isPresent(data.silane);
+        materialType = determineMaterialType();
+
+        // the window of the pyrometer is the period between the nodes of the heater power which contains the center of the layer
+        GrowthParameter heaterPower = data.heaterPower;
+        int stopNode = getPyrometerWindowStopNode(heaterPower, centerLayerTimeStamp);
+        long startLayerTimeStamp = 0;
+        long stopLayerTimeStamp = 0;
+        if (stopNode < heaterPower.size()) {
+            startLayerTimeStamp = heaterPower.getTimeStamp(stopNode - 1);
+            stopLayerTimeStamp = heaterPower.getTimeStamp(stopNode);
+        }
+        constantPyrometerTemperature = (data.heaterPower.getValueAtTimeStamp(startLayerTimeStamp) == data.heaterPower.getValueAtTimeStamp(stopLayerTimeStamp));
+        if (constantPyrometerTemperature) {
+            pyrometerTemperature = Approximation.getConstant(data.pyrometerTemperature, startLayerTimeStamp, stopLayerTimeStamp);
+            pyrometerFit = null;
+        }
+        else {
+            pyrometerTemperature = 0;
+            pyrometerFit = Approximation.getLinearFit(data.pyrometerTemperature, startLayerTimeStamp, stopLayerTimeStamp);
+        }
+    }
+
+    /**
+     * Returns the index of the node of the heater power ending the window of the pyrometer temperature of a layer, or the size of the heater power if there is no such node.
+     */
+    private static int getPyrometerWindowStopNode(GrowthParameter heaterPower, long centerLayerTimeStamp) {
+        return Math.max(1, heaterPower.getSampleIndex(centerLayerTimeStamp + 1));
+    }
+
+    /**
+     * Returns the ending of the window of the pyrometer temperature of a layer, i.e. the latest timestamp of the data the layer depends on.
+     * @return timestamp or Long.MAX_VALUE if the center of the layer is not followed by a node of the heater power
+     */
+    static long getPyrometerWindowStop(Data data, long centerLayerTimeStamp) {
+        int stopNode = getPyrometerWindowStopNode(data.heaterPower, centerLayerTimeStamp);
+        return (stopNode < data.heaterPower.size()) ? data.heaterPower.getTimeStamp(stopNode) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns pyrometer temperature at the given timestamp. It is either a constant or a linear fit of the pyrometer temperature within a period of the substrate heat power.
+     */
+    double getPyrometerTemperature(long timeStamp) {
+        return constantPyrometerTemperature ? pyrometerTemperature : pyrometerFit.getValue(timeStamp);
+    }
+
+    /**
+     * Determines a type of the material by the set of the present precursors.
+     */
+    private MaterialType determineMaterialType() {
+        if ((indium | aluminium | gallium) & (ammonia | nitrogenPlasma)) return InAlN;
+        else if (indium | aluminium | gallium) return METAL;
+        else if ((silane | silicon) & (ammonia | nitrogenPlasma)) return SiN;
+        else if (ammonia) return NH3;
+        else if (nitrogenPlasma) return NITROGEN_PLASMA;
+        else return EMPTY;
+    }
+
+    /**
+     * Checks if a growth parameter is actual for the given layer
+     * @param parameter growth parameter to be checked
+     * @return true if the growth parameter is actual or false otherwise
+     */
+    private boolean isPresent(GrowthParameter parameter) {
+        return (parameter.getValueAtTimeStamp(centerLayerTimeStamp) != null);
+    }
+}
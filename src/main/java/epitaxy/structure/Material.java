@@ -1,11 +1,7 @@
 package epitaxy.structure;
 
 import epitaxy.growthconditions.Data;
-import epitaxy.growthconditions.datatreatment.Approximation;
-import epitaxy.growthconditions.parameters.EffusionCell;
-import epitaxy.growthconditions.parameters.GasFlow;
-import epitaxy.growthconditions.parameters.GrowthParameter;
-import epitaxy.growthconditions.parameters.SubstrateHeat;
+import util.PipelineMetrics;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
@@ -24,8 +20,7 @@ public class Material {
 
 
     private Data data;
-    private List<GrowthParameter> parameters;
-    private long centerLayerTimeStamp;
+    private LayerContext context;
 
     private long timeStamp;
     private double pyrometerTemperature;
@@ -53,11 +48,20 @@ public class Material {
      * @param centerLayerTimeStamp
      */
     public Material(Data data, long timeStamp, long centerLayerTimeStamp) {
-        this.data = data;
+        this(new LayerContext(data, centerLayerTimeStamp), timeStamp);
+    }
+
+    /**
+     * It composes a material of a layer which properties independent of time are already determined.
+     * @param context properties of the layer
+     * @param timeStamp
+     */
+    Material(LayerContext context, long timeStamp) {
+        this.context = context;
+        this.data = context.data;
         this.timeStamp = timeStamp;
-        this.centerLayerTimeStamp = centerLayerTimeStamp;
-        this.parameters = data.getGrowthParameters();
         initMaterial();
+        PipelineMetrics.increment(PipelineMetrics.Metric.MATERIAL_EVALUATIONS);
     }
 
     /**
@@ -74,12 +78,14 @@ public class Material {
      */
     private void determineStoichiometry() {
         determineSubstrateTemperature();
-        if ((isPresent(data.indium) | isPresent(data.aluminium) | isPresent(data.gallium)) & (isPresent(data.ammonia) | isPresent(data.nitrogenPlasma))) InAlGaN();
-        else if (isPresent(data.indium) | isPresent(data.aluminium) | isPresent(data.gallium)) metal();
-        else if ((isPresent(data.silane) | isPresent(data.silicon)) & (isPresent(data.ammonia) | isPresent(data.nitrogenPlasma))) SiN();
-        else if (isPresent(data.ammonia)) ammonia();
-        else if (isPresent(data.nitrogenPlasma)) nitrogenPlasma();
-        else empty();
+        switch (context.materialType) {
+            case InAlN: InAlGaN(); break;
+            case METAL: metal(); break;
+            case SiN: SiN(); break;
+            case NH3: ammonia(); break;
+            case NITROGEN_PLASMA: nitrogenPlasma(); break;
+            default: empty();
+        }
     }
 
     /**
@@ -173,30 +179,12 @@ public class Material {
         growthRate = 0;
     }
 
-    /**
-     * Checks if a growth parameter is actual for the given layer
-     * @param parameter growth parameter to be checked
-     * @return true if the growth parameter is actual or false otherwise
-     */
-    private boolean isPresent(GrowthParameter parameter) {
-        return (parameter.getValueAtTimeStamp(centerLayerTimeStamp) != null);
-    }
-
     /**
      * Determines pyrometer temperature at the timeStamp accepted via constructor. A pyrometer temperature is a rather specific parameter which is calculated taking into account a substrate heat power.
+     * The approximation of the pyrometer temperature is made once per layer by LayerContext.
      */
     private void determineSubstrateTemperature() {
-        long startLayerTimeStamp = 0;
-        long stopLayerTimeStamp = 0;
-        for (int i = 1; i < data.heaterPower.size(); i++) {
-            if (data.heaterPower.getTimeStamp(i) > centerLayerTimeStamp) {
-                startLayerTimeStamp = data.heaterPower.getTimeStamp(i-1);
-                stopLayerTimeStamp = data.heaterPower.getTimeStamp(i);
-            }
-        }
-        if (data.heaterPower.getValueAtTimeStamp(startLayerTimeStamp) == data.heaterPower.getValueAtTimeStamp(stopLayerTimeStamp)) pyrometerTemperature = Approximation.getConstant(data.pyrometerTemperature, startLayerTimeStamp, stopLayerTimeStamp);
-        else pyrometerTemperature = Approximation.getLinearFit(data.pyrometerTemperature, startLayerTimeStamp, stopLayerTimeStamp).getValue(timeStamp);
-
+        pyrometerTemperature = context.getPyrometerTemperature(timeStamp);
         heaterPower = data.heaterPower.getValueAtTimeStamp(timeStamp);
      //   heaterTemperature = data.heaterTemperature.getValueAtTimeStamp(timeStamp);
 
@@ -206,15 +194,15 @@ public class Material {
      * Determines dopants and their concentrations.
      */
     private void determineDopants() {
-        if (isPresent(data.silicon)) {
+        if (context.silicon) {
             dopants.add(SILICON_DOPANT);
             dopingLevels.add(data.silicon.getGrowthRate(timeStamp, pyrometerTemperature));
         }
-        if (isPresent(data.silane)) {
+        if (context.silane) {
             dopants.add(SILICON_DOPANT);
             dopingLevels.add(data.silane.getGrowthRate(timeStamp, pyrometerTemperature));
         }
-        if (isPresent(data.magnesium)) {
+        if (context.magnesium) {
             dopants.add(MAGNESIUM_DOPANT);
             dopingLevels.add(data.magnesium.getGrowthRate(timeStamp, pyrometerTemperature));
         }
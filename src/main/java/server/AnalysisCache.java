@@ -0,0 +1,254 @@
+package server;
+
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.FilesMBE;
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.structure.Heterostructure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The class caches the loaded Data and the reconstructed Heterostructures of growth runs. An entry is identified by the paths, sizes and modification times
+ * of the files of a run and by the analyzed time interval, so a changed file is loaded again. The least recently used entries are evicted
+ * when the estimated heap size of all the entries exceeds the limit.
+ * Concurrent requests for the same entry wait for a single load.
+ */
+public class AnalysisCache {
+
+    // estimated heap sizes of the parts of an entry, in bytes, the growth parameters estimate their own sizes
+    private static final long ENTRY_WEIGHT = 1024;
+    private static final long LAYER_WEIGHT = 600;           // Layer, two Materials and their context
+
+    private final long maxWeight;
+    private final Object lock = new Object();
+    private final LinkedHashMap<Key, CompletableFuture<Analysis>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxWeight limit of the estimated heap size of the entries in bytes
+     */
+    public AnalysisCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Loaded data and reconstructed heterostructure of a run.
+     */
+    public static class Analysis {
+        private final Data data;
+        private final Heterostructure heterostructure;
+        private final long weight;
+
+        Analysis(Data data, Heterostructure heterostructure) {
+            this.data = data;
+            this.heterostructure = heterostructure;
+            this.weight = estimateWeight(data, heterostructure);
+        }
+
+        public Data getData() {
+            return data;
+        }
+
+        public Heterostructure getHeterostructure() {
+            return heterostructure;
+        }
+
+        /**
+         * Returns the estimated heap size in bytes.
+         */
+        public long getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * It returns the analysis of a run within a time interval. It is taken from the cache or loaded by FilesMBE.getData(). If the same analysis is being loaded
+     * by another thread, the method waits for that load.
+     * @param valuesPath path of the file containing values vs. time
+     * @param shutterPath path of the file containing shutter states vs. time
+     * @param settingsPath path of the json-file containing settings
+     * @param startTimeStamp beginning of the analyzed time interval
+     * @param stopTimeStamp ending of the analyzed time interval
+     * @return Analysis object
+     * @throws IOException
+     */
+    public Analysis get(Path valuesPath, Path shutterPath, Path settingsPath, long startTimeStamp, long stopTimeStamp) throws IOException {
+        Key key = new Key(valuesPath, shutterPath, settingsPath, startTimeStamp, stopTimeStamp);
+        CompletableFuture<Analysis> future;
+        boolean loading = false;
+        synchronized (lock) {
+            future = entries.get(key);
+            if (future != null) hitCount++;
+            else {
+                missCount++;
+                future = new CompletableFuture<>();
+                entries.put(key, future);
+                loading = true;
+            }
+        }
+        if (loading) load(key, future);
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * It removes all the entries except for the ones being loaded.
+     */
+    public void clear() {
+        synchronized (lock) {
+            evict(0);
+        }
+    }
+
+    public long getWeight() {
+        synchronized (lock) {
+            return weight;
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getHitCount() {
+        synchronized (lock) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (lock) {
+            return missCount;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized (lock) {
+            return evictionCount;
+        }
+    }
+
+    /**
+     * It returns the number of the entries including the ones being loaded.
+     */
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * It loads an analysis and completes its future. A failed load is removed from the cache, so the next request tries again.
+     */
+    private void load(Key key, CompletableFuture<Analysis> future) {
+        Analysis analysis;
+        try {
+            Data data = FilesMBE.getData(key.valuesPath.toString(), key.shutterPath.toString(), key.settingsPath.toString(), key.startTimeStamp, key.stopTimeStamp);
+            analysis = new Analysis(data, new Heterostructure(data));
+        }
+        catch (IOException | RuntimeException | Error e) {
+            synchronized (lock) {
+                entries.remove(key, future);
+            }
+            future.completeExceptionally(e);
+            return;
+        }
+        synchronized (lock) {
+            if (entries.get(key) == future) weight += analysis.weight;
+            future.complete(analysis);
+            evict(maxWeight);
+        }
+    }
+
+    /**
+     * It removes the least recently used loaded entries until their weight does not exceed the given one. The lock must be held.
+     */
+    private void evict(long targetWeight) {
+        Iterator<Map.Entry<Key, CompletableFuture<Analysis>>> iterator = entries.entrySet().iterator();
+        while ((weight > targetWeight) && iterator.hasNext()) {
+            CompletableFuture<Analysis> future = iterator.next().getValue();
+            if (!future.isDone()) continue;         // the entries being loaded have no weight yet
+            iterator.remove();
+            weight -= future.getNow(null).weight;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * It estimates the heap size of the growth parameters (see GrowthParameter.estimateHeapSize()) and of the layers. The pending growth parameters are not processed
+     * by the estimation, their raw samples are counted.
+     */
+    static long estimateWeight(Data data, Heterostructure heterostructure) {
+        long weight = ENTRY_WEIGHT;
+        for (GrowthParameter growthParameter : data.getGrowthParameters())
+            if (growthParameter != null) weight += growthParameter.estimateHeapSize();
+        weight += LAYER_WEIGHT*heterostructure.getLayers().size();
+        return weight;
+    }
+
+    /**
+     * Identity of an analysis: the files with their sizes and modification times and the time interval.
+     */
+    private static class Key {
+        final Path valuesPath;
+        final Path shutterPath;
+        final Path settingsPath;
+        final long startTimeStamp;
+        final long stopTimeStamp;
+        private final long[] versions = new long[6];
+
+        Key(Path valuesPath, Path shutterPath, Path settingsPath, long startTimeStamp, long stopTimeStamp) throws IOException {
+            this.valuesPath = valuesPath.toAbsolutePath().normalize();
+            this.shutterPath = shutterPath.toAbsolutePath().normalize();
+            this.settingsPath = settingsPath.toAbsolutePath().normalize();
+            this.startTimeStamp = startTimeStamp;
+            this.stopTimeStamp = stopTimeStamp;
+            Path[] paths = {this.valuesPath, this.shutterPath, this.settingsPath};
+            for (int i = 0; i < paths.length; i++) {
+                BasicFileAttributes attributes = Files.readAttributes(paths[i], BasicFileAttributes.class);
+                versions[2*i] = attributes.size();
+                versions[2*i + 1] = attributes.lastModifiedTime().toMillis();
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return valuesPath.equals(key.valuesPath) && shutterPath.equals(key.shutterPath) && settingsPath.equals(key.settingsPath)
+                    && (startTimeStamp == key.startTimeStamp) && (stopTimeStamp == key.stopTimeStamp) && Arrays.equals(versions, key.versions);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = valuesPath.hashCode();
+            hash = 31*hash + shutterPath.hashCode();
+            hash = 31*hash + settingsPath.hashCode();
+            hash = 31*hash + Long.hashCode(startTimeStamp);
+            hash = 31*hash + Long.hashCode(stopTimeStamp);
+            return 31*hash + Arrays.hashCode(versions);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package server;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import epitaxy.structure.Heterostructure;
+import epitaxy.structure.Layer;
+import util.PipelineMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The class is an embedded HTTP server which reconstructs heterostructures from the files of growth runs and returns them in JSON format.
+ * A run is a directory under the root directory of the server which contains a values file ("*values*.csv"), a shutter file ("*shutter*.csv") and settings files ("*.json").
+ * The requests are handled by a bounded pool of threads with a bounded queue, so a large run occupies a single thread only, and the server answers
+ * "503 Service Unavailable" instead of piling up the requests when the queue is full.
+ * The server listens to the loopback address unless another address is given explicitly, and the internal errors are logged rather than sent to the clients.
+ *
+ * The analyses are kept in an AnalysisCache, so the runs looked at by several users are loaded once.
+ *
+ * GET /runs - the runs and their settings files;
+ * GET /heterostructure?run=B081&settings=B081_settings.json[&start=...&stop=...] - the layers of the heterostructure grown within the optional time interval (UNIX time in milliseconds);
+ * GET /cache - statistics of the cache;
+ * GET /metrics - report of the pipeline metrics (see PipelineMetrics), which are also registered as a JMX MBean.
+ */
+public class AnalysisServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final Logger LOGGER = Logger.getLogger(AnalysisServer.class.getName());
+
+    private final Path root;
+    private final HttpServer httpServer;
+    private final ThreadPoolExecutor executor;
+    private final AnalysisCache cache;
+    private final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+
+    /**
+     * It creates a server listening to the loopback address which cache may take a quarter of the maximal heap size.
+     * @param root directory containing the run directories
+     * @param port port to listen to, 0 means any free port
+     * @param threads maximal number of the requests processed simultaneously
+     * @param queueCapacity maximal number of the requests waiting for processing
+     * @throws IOException
+     */
+    public AnalysisServer(Path root, int port, int threads, int queueCapacity) throws IOException {
+        this(root, InetAddress.getLoopbackAddress(), port, threads, queueCapacity, new AnalysisCache(Runtime.getRuntime().maxMemory()/4));
+    }
+
+    /**
+     * It creates a server listening to the loopback address.
+     * @param root directory containing the run directories
+     * @param port port to listen to, 0 means any free port
+     * @param threads maximal number of the requests processed simultaneously
+     * @param queueCapacity maximal number of the requests waiting for processing
+     * @param cache cache of the analyses
+     * @throws IOException
+     */
+    public AnalysisServer(Path root, int port, int threads, int queueCapacity, AnalysisCache cache) throws IOException {
+        this(root, InetAddress.getLoopbackAddress(), port, threads, queueCapacity, cache);
+    }
+
+    /**
+     * @param root directory containing the run directories
+     * @param address address to listen to, e.g. the wildcard address (0.0.0.0) to accept the requests from other hosts
+     * @param port port to listen to, 0 means any free port
+     * @param threads maximal number of the requests processed simultaneously
+     * @param queueCapacity maximal number of the requests waiting for processing
+     * @param cache cache of the analyses
+     * @throws IOException
+     */
+    public AnalysisServer(Path root, InetAddress address, int port, int threads, int queueCapacity, AnalysisCache cache) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.cache = cache;
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity));
+        executor.allowCoreThreadTimeOut(true);
+        httpServer = HttpServer.create(new InetSocketAddress(address, port), 0);
+        // the dispatcher thread only passes the exchanges to the executor, so a rejected request is answered at once
+        httpServer.createContext("/runs", exchange -> dispatch(exchange, this::handleRuns));
+        httpServer.createContext("/heterostructure", exchange -> dispatch(exchange, this::handleHeterostructure));
+        httpServer.createContext("/cache", exchange -> dispatch(exchange, this::handleCache));
+        httpServer.createContext("/metrics", exchange -> dispatch(exchange, parameters -> PipelineMetrics.getReport()));
+        PipelineMetrics.register();
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * It stops the server. The requests being processed are completed.
+     * @param delaySeconds maximal time to wait for the exchanges in progress
+     */
+    public void stop(int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public InetAddress getAddress() {
+        return httpServer.getAddress().getAddress();
+    }
+
+    /**
+     * It starts a server. Arguments: root directory of the runs (default "resources/input"), port (default 8080), number of threads (default number of processors),
+     * address to listen to (default the loopback address, "0.0.0.0" accepts the requests from any host).
+     */
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get((args.length > 0) ? args[0] : "resources/input");
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        InetAddress address = (args.length > 3) ? InetAddress.getByName(args[3]) : InetAddress.getLoopbackAddress();
+        AnalysisServer server = new AnalysisServer(root, address, port, threads, 4*threads, new AnalysisCache(Runtime.getRuntime().maxMemory()/4));
+        server.start();
+        System.out.println("Serving " + server.root + " on " + server.getAddress().getHostAddress() + ":" + server.getPort());
+    }
+
+    /**
+     * Handler of a request which result is sent as JSON.
+     */
+    private interface Handler {
+        Object handle(Map<String, String> parameters) throws IOException;
+    }
+
+    private void dispatch(HttpExchange exchange, Handler handler) {
+        try {
+            executor.execute(() -> respond(exchange, handler));
+        }
+        catch (RejectedExecutionException e) {
+            send(exchange, 503, error("The server is busy, try again later"));
+        }
+    }
+
+    private void respond(HttpExchange exchange, Handler handler) {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("Only GET requests are supported"));
+                return;
+            }
+            send(exchange, 200, handler.handle(parseQuery(exchange.getRequestURI().getRawQuery())));
+        }
+        catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        }
+        catch (NoSuchFileException e) {
+            send(exchange, 404, error("File not found: " + e.getFile()));
+        }
+        catch (IOException | RuntimeException e) {
+            // the details (e.g. the paths of the files) are not disclosed to the client
+            LOGGER.log(Level.SEVERE, "Request " + exchange.getRequestURI() + " failed", e);
+            send(exchange, 500, error("Internal server error"));
+        }
+    }
+
+    /**
+     * It lists the run directories and their settings files.
+     */
+    private Object handleRuns(Map<String, String> parameters) throws IOException {
+        Map<String, List<String>> runs = new HashMap<>();
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : directories) {
+                RunFiles files = RunFiles.find(directory);
+                if (files.values != null) runs.put(directory.getFileName().toString(), files.settingsNames());
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * It reconstructs the heterostructure of a run.
+     */
+    private Object handleHeterostructure(Map<String, String> parameters) throws IOException {
+        Path directory = getRunDirectory(parameters.get("run"));
+        RunFiles files = RunFiles.find(directory);
+        if (files.values == null) throw new NoSuchFileException(root.relativize(directory) + " values file");
+        if (files.shutters == null) throw new NoSuchFileException(root.relativize(directory) + " shutter file");
+        Path settings = files.getSettings(parameters.get("settings"));
+        long startTimeStamp = parseTimeStamp(parameters, "start", 0);
+        long stopTimeStamp = parseTimeStamp(parameters, "stop", Long.MAX_VALUE);
+        Heterostructure heterostructure = cache.get(files.values, files.shutters, settings, startTimeStamp, stopTimeStamp).getHeterostructure();
+        List<LayerInfo> layers = new ArrayList<>();
+        for (Layer layer : heterostructure.getLayers()) layers.add(new LayerInfo(layers.size(), layer));
+        return layers;
+    }
+
+    /**
+     * It returns the statistics of the cache.
+     */
+    private Object handleCache(Map<String, String> parameters) {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("entries", (long) cache.size());
+        statistics.put("weight", cache.getWeight());
+        statistics.put("maxWeight", cache.getMaxWeight());
+        statistics.put("hits", cache.getHitCount());
+        statistics.put("misses", cache.getMissCount());
+        statistics.put("evictions", cache.getEvictionCount());
+        return statistics;
+    }
+
+    /**
+     * It resolves a run name within the root directory. Names leading out of the root directory are rejected.
+     */
+    private Path getRunDirectory(String run) throws NoSuchFileException {
+        if ((run == null) || run.isEmpty()) throw new IllegalArgumentException("Parameter \"run\" is required");
+        Path directory = root.resolve(run).normalize();
+        if (!directory.startsWith(root) || directory.equals(root)) throw new IllegalArgumentException("Invalid run: " + run);
+        if (!Files.isDirectory(directory)) throw new NoSuchFileException(run);
+        return directory;
+    }
+
+    private static long parseTimeStamp(Map<String, String> parameters, String name, long defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter \"" + name + "\" must be UNIX time in milliseconds");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int separator = pair.indexOf('=');
+            String name = (separator < 0) ? pair : pair.substring(0, separator);
+            String value = (separator < 0) ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static Map<String, String> error(String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return error;
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) {
+        try {
+            byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        catch (IOException e) {
+            // the client has closed the connection
+        }
+        finally {
+            exchange.close();
+        }
+    }
+}
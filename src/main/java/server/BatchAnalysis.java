@@ -0,0 +1,296 @@
+package server;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.FilesMBE;
+import epitaxy.structure.Heterostructure;
+import epitaxy.structure.Layer;
+import util.PipelineMetrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The class reconstructs the heterostructures of all the growth runs found in a directory tree. Every pair of a run and its settings file is analyzed
+ * by a separate task of a work-stealing pool, and the results are written to a summary as soon as a task completes.
+ * Memory is throttled by a semaphore: a run takes permits for its estimated heap size before its task is submitted and returns them on completion,
+ * so large runs are not loaded simultaneously beyond the memory budget.
+ */
+public class BatchAnalysis {
+
+    // parsed samples, nodes and temporary columns of a run take up to several times more heap than its files
+    private static final int HEAP_PER_FILE_BYTE = 4;
+    private static final int PERMIT_SIZE = 1 << 20;        // a permit is a mebibyte
+
+    private final ForkJoinPool pool;
+    private final Semaphore memory;
+    private final int memoryPermits;
+
+    /**
+     * @param parallelism number of the runs analyzed simultaneously at most
+     * @param memoryBudget estimated heap size of the runs analyzed simultaneously in bytes
+     */
+    public BatchAnalysis(int parallelism, long memoryBudget) {
+        pool = new ForkJoinPool(parallelism);
+        memoryPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget/PERMIT_SIZE));
+        memory = new Semaphore(memoryPermits, true);
+    }
+
+    /**
+     * A run with a settings file.
+     */
+    public static class Job {
+        private final String run;
+        private final Path values;
+        private final Path shutters;
+        private final Path settings;
+
+        Job(String run, Path values, Path shutters, Path settings) {
+            this.run = run;
+            this.values = values;
+            this.shutters = shutters;
+            this.settings = settings;
+        }
+
+        public String getRun() {
+            return run;
+        }
+
+        public Path getSettings() {
+            return settings;
+        }
+    }
+
+    /**
+     * Result of a job. It is serialized to the JSON summary as is.
+     */
+    public static class Result {
+        final String run;
+        final String settings;
+        final long loadMillis;
+        final long reconstructionMillis;
+        final String error;
+        final List<LayerInfo> layers;
+
+        Result(Job job, long loadMillis, long reconstructionMillis, List<LayerInfo> layers, String error) {
+            this.run = job.run;
+            this.settings = job.settings.getFileName().toString();
+            this.loadMillis = loadMillis;
+            this.reconstructionMillis = reconstructionMillis;
+            this.layers = layers;
+            this.error = error;
+        }
+    }
+
+    /**
+     * It finds the run directories in a directory tree, i.e. the directories containing a values file and a shutter file (see RunFiles).
+     * @param root root of the directory tree
+     * @param settings settings file applied to all the runs or null if every run is analyzed with each of its own settings files
+     * @return List of jobs in the order of the paths
+     * @throws IOException
+     */
+    public static List<Job> discover(Path root, Path settings) throws IOException {
+        List<Path> directories;
+        try (Stream<Path> paths = Files.walk(root)) {
+            directories = paths.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+        List<Job> jobs = new ArrayList<>();
+        for (Path directory : directories) {
+            RunFiles files = RunFiles.find(directory);
+            if ((files.values == null) || (files.shutters == null)) continue;
+            String run = root.relativize(directory).toString();
+            if (settings != null) jobs.add(new Job(run, files.values, files.shutters, settings));
+            else for (Path runSettings : files.settings) jobs.add(new Job(run, files.values, files.shutters, runSettings));
+        }
+        return jobs;
+    }
+
+    /**
+     * It analyzes the jobs and writes their results to a summary in the order of completion.
+     * @param jobs List of jobs
+     * @param summary summary receiving the results
+     * @return number of the failed jobs
+     * @throws IOException if the summary can not be written
+     */
+    public int run(List<Job> jobs, Summary summary) throws IOException {
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(jobs.size());
+        int failed = 0;
+        try {
+            for (Job job : jobs) {
+                int permits = getPermits(job);
+                memory.acquire(permits);
+                tasks.add(pool.submit(() -> {
+                    try {
+                        Result result = analyze(job);
+                        summary.write(result);
+                        return result;
+                    }
+                    finally {
+                        memory.release(permits);
+                    }
+                }));
+            }
+            for (ForkJoinTask<Result> task : tasks)
+                if (task.get().error != null) failed++;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+        finally {
+            for (ForkJoinTask<Result> task : tasks) task.cancel(false);
+        }
+        return failed;
+    }
+
+    /**
+     * It stops the pool. The jobs in progress are completed.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * It analyzes every run of a directory tree. Arguments: root directory, summary file (".json" - JSON array, otherwise semicolon-separated CSV),
+     * optional settings file applied to all the runs. If the pipeline metrics are enabled, their report is written next to the summary as "*.metrics.json".
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Arguments: <runs directory> <summary.csv|summary.json> [settings.json]");
+            return;
+        }
+        Path root = Paths.get(args[0]);
+        Path summaryPath = Paths.get(args[1]);
+        Path settings = (args.length > 2) ? Paths.get(args[2]) : null;
+        List<Job> jobs = discover(root, settings);
+        BatchAnalysis batch = new BatchAnalysis(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory()/2);
+        long start = System.nanoTime();
+        int failed;
+        try (Summary summary = summaryPath.toString().toLowerCase(Locale.ROOT).endsWith(".json") ? new JsonSummary(summaryPath) : new CsvSummary(summaryPath)) {
+            failed = batch.run(jobs, summary);
+        }
+        finally {
+            batch.shutdown();
+        }
+        System.out.println(jobs.size() + " jobs, " + failed + " failed, " + (System.nanoTime() - start)/1000000 + " ms");
+        if (PipelineMetrics.isMetricsEnabled()) PipelineMetrics.writeReport(summaryPath.resolveSibling(summaryPath.getFileName() + ".metrics.json"));
+    }
+
+    /**
+     * It estimates the heap size of a job in permits. A job larger than the whole budget takes the whole budget, i.e. it is analyzed alone.
+     */
+    private int getPermits(Job job) throws IOException {
+        long bytes = HEAP_PER_FILE_BYTE*(Files.size(job.values) + Files.size(job.shutters));
+        return (int) Math.max(1, Math.min(memoryPermits, bytes/PERMIT_SIZE));
+    }
+
+    /**
+     * It analyzes a job. A failure of the job is recorded in the result.
+     */
+    private static Result analyze(Job job) {
+        long start = System.nanoTime();
+        long loadMillis = 0;
+        try {
+            Data data = FilesMBE.getData(job.values.toString(), job.shutters.toString(), job.settings.toString());
+            loadMillis = (System.nanoTime() - start)/1000000;
+            start = System.nanoTime();
+            Heterostructure heterostructure = new Heterostructure(data);
+            List<LayerInfo> layers = new ArrayList<>();
+            for (Layer layer : heterostructure.getLayers()) layers.add(new LayerInfo(layers.size(), layer));
+            return new Result(job, loadMillis, (System.nanoTime() - start)/1000000, layers, null);
+        }
+        catch (IOException | RuntimeException e) {
+            return new Result(job, loadMillis, 0, new ArrayList<>(), e.toString());
+        }
+    }
+
+    /**
+     * Destination of the results. The results are written by several threads.
+     */
+    public interface Summary extends Closeable {
+        void write(Result result) throws IOException;
+    }
+
+    /**
+     * Summary in the form of a JSON array of the results.
+     */
+    public static class JsonSummary implements Summary {
+        private final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+        private final Writer writer;
+        private boolean first = true;
+
+        public JsonSummary(Path path) throws IOException {
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            writer.write("[");
+        }
+
+        @Override
+        public synchronized void write(Result result) throws IOException {
+            writer.write(first ? System.lineSeparator() : "," + System.lineSeparator());
+            gson.toJson(result, writer);
+            writer.flush();
+            first = false;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.write(System.lineSeparator() + "]" + System.lineSeparator());
+            writer.close();
+        }
+    }
+
+    /**
+     * Summary in the form of a semicolon-separated table with a line per layer. A run without layers takes a single line.
+     */
+    public static class CsvSummary implements Summary {
+        private static final String HEADER = "Run;Settings;Layer;Start;Stop;Thickness (um);Start formula;Stop formula;Load (ms);Reconstruction (ms);Error";
+        private final BufferedWriter writer;
+
+        public CsvSummary(Path path) throws IOException {
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            writer.write(HEADER);
+            writer.newLine();
+        }
+
+        @Override
+        public synchronized void write(Result result) throws IOException {
+            String prefix = result.run + ";" + result.settings + ";";
+            String suffix = ";" + result.loadMillis + ";" + result.reconstructionMillis + ";" + ((result.error == null) ? "" : result.error.replace(';', ','));
+            if (result.layers.isEmpty()) writer.write(prefix + ";;;;;" + suffix);
+            for (LayerInfo layer : result.layers) {
+                writer.write(prefix + layer.index + ";" + layer.start + ";" + layer.stop + ";" + layer.thickness + ";"
+                        + layer.startMaterial.formula + ";" + layer.stopMaterial.formula + suffix);
+                writer.newLine();
+            }
+            if (result.layers.isEmpty()) writer.newLine();
+            writer.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package server;
+
+import epitaxy.structure.Layer;
+import epitaxy.structure.Material;
+import util.Time;
+
+import java.util.List;
+
+/**
+ * JSON representation of a layer.
+ */
+class LayerInfo {
+    final int index;
+    final String start;
+    final String stop;
+    final long startTimeStamp;
+    final long stopTimeStamp;
+    final double thickness;         // micrometers
+    final MaterialInfo startMaterial;
+    final MaterialInfo stopMaterial;
+
+    LayerInfo(int index, Layer layer) {
+        this.index = index;
+        this.startTimeStamp = layer.getStartMaterial().getTimeStamp();
+        this.stopTimeStamp = layer.getStopMaterial().getTimeStamp();
+        this.start = Time.millisToStr(startTimeStamp);
+        this.stop = Time.millisToStr(stopTimeStamp);
+        this.thickness = layer.getNominalThickness();
+        this.startMaterial = new MaterialInfo(layer.getStartMaterial());
+        this.stopMaterial = new MaterialInfo(layer.getStopMaterial());
+    }
+
+    /**
+     * JSON representation of a material.
+     */
+    static class MaterialInfo {
+        final String formula;
+        final String type;
+        final double xInN;
+        final double yAlN;
+        final double growthRate;
+        final boolean metalRichConditions;
+        final double pyrometerTemperature;
+        final double heaterPower;
+        final double heaterTemperature;
+        final List<String> dopants;
+        final List<Double> dopingLevels;
+
+        MaterialInfo(Material material) {
+            this.formula = material.getFormula();
+            this.type = String.valueOf(material.getMaterialType());
+            this.xInN = material.getxInN();
+            this.yAlN = material.getyAlN();
+            this.growthRate = material.getGrowthRate();
+            this.metalRichConditions = material.isMetalRichConditions();
+            this.pyrometerTemperature = material.getPyrometerTemperature();
+            this.heaterPower = material.getHeaterPower();
+            this.heaterTemperature = material.getHeaterTemperature();
+            this.dopants = material.getDopants();
+            this.dopingLevels = material.getDopingLevels();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Files of a growth run found in a run directory by their names: a values file ("*values*.csv"), a shutter file ("*shutter*.csv") and settings files ("*.json").
+ */
+class RunFiles {
+    Path values;
+    Path shutters;
+    final List<Path> settings = new ArrayList<>();
+
+    /**
+     * It finds the files of a run in a directory. The fields of the missing files are null.
+     */
+    static RunFiles find(Path directory) throws IOException {
+        RunFiles files = new RunFiles();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (name.endsWith(".csv") && name.contains("values")) files.values = path;
+                else if (name.endsWith(".csv") && name.contains("shutter")) files.shutters = path;
+                else if (name.endsWith(".json")) files.settings.add(path);
+            }
+        }
+        files.settings.sort(null);
+        return files;
+    }
+
+    List<String> settingsNames() {
+        List<String> names = new ArrayList<>();
+        for (Path path : settings) names.add(path.getFileName().toString());
+        return names;
+    }
+
+    /**
+     * It returns the settings file of the given name or the only settings file of the run if the name is not given.
+     */
+    Path getSettings(String name) throws NoSuchFileException {
+        if ((name == null) || name.isEmpty()) {
+            if (settings.size() == 1) return settings.get(0);
+            throw new IllegalArgumentException("Parameter \"settings\" is required, the run has " + settings.size() + " settings files");
+        }
+        for (Path path : settings)
+            if (path.getFileName().toString().equals(name)) return path;
+        throw new NoSuchFileException(name);
+    }
+}
@@ -0,0 +1,251 @@
+package util;
+
+import com.google.gson.GsonBuilder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class collects the timers and counters of the pipeline FilesMBE.getData() -> Heterostructure: the time of every stage and the numbers of the processed rows, samples, nodes,
+ * intervals, layers and materials. A metric is summed over all the loads and is also kept per channel (the name of a growth parameter) where it has one.
+ * The metrics are off by default, which can be changed by "mbe.metrics" system property. When they are off, a probe costs a read of a volatile flag.
+ * The metrics are available as a JMX MBean (see register()) and as a JSON report.
+ */
+public class PipelineMetrics implements PipelineMetricsMBean {
+
+    public static final String OBJECT_NAME = "epitaxy:type=PipelineMetrics";
+
+    /**
+     * Timers of the stages in nanoseconds and counters.
+     */
+    public enum Metric {
+        VALUES_PARSING_NANOS("valuesParsingNanos"),
+        SHUTTERS_PARSING_NANOS("shuttersParsingNanos"),
+        CACHE_READING_NANOS("cacheReadingNanos"),
+        RESAMPLING_NANOS("resamplingNanos"),
+        INTERVALS_NANOS("intervalsNanos"),
+        INDEXING_NANOS("indexingNanos"),
+        LAYER_BOUNDS_NANOS("layerBoundsNanos"),
+        LAYER_CONTEXT_NANOS("layerContextNanos"),       // presence of the precursors and pyrometer fits
+        INTEGRATION_NANOS("integrationNanos"),          // start and stop materials and integration of growth rate
+        ROWS_PARSED("rowsParsed"),                      // lines of the values file within the analyzed interval
+        SHUTTER_ROWS_PARSED("shutterRowsParsed"),       // lines of the shutter file within the analyzed interval, parsed or read from a sidecar
+        SHUTTER_EVENTS("shutterEvents"),
+        SAMPLES_ACCEPTED("samplesAccepted"),
+        SAMPLES_DROPPED("samplesDropped"),              // samples following the previous one earlier than in timeStep_ms
+        RAW_SAMPLES("rawSamples"),                      // samples passed to resampling
+        NODES("nodes"),                                 // nodes left by resampling
+        INTERVALS("intervals"),
+        LAYERS("layers"),
+        MATERIAL_EVALUATIONS("materialEvaluations");
+
+        private final String key;
+
+        Metric(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final int METRICS_NUMBER = Metric.values().length;
+    private static final long STOPPED = 0;
+
+    private static final PipelineMetrics instance = new PipelineMetrics();
+    private static volatile boolean enabled = Boolean.getBoolean("mbe.metrics");
+    private static final LongAdder[] totals = newAdders();
+    private static final ConcurrentHashMap<String, LongAdder[]> channels = new ConcurrentHashMap<>();
+
+    private PipelineMetrics() {
+    }
+
+    public static PipelineMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * It switches the collection of the metrics on or off. The collected values are kept.
+     */
+    public static void setMetricsEnabled(boolean enabled) {
+        PipelineMetrics.enabled = enabled;
+    }
+
+    public static boolean isMetricsEnabled() {
+        return enabled;
+    }
+
+    /**
+     * It adds an amount to a metric.
+     * @param metric metric
+     * @param channel name of a growth parameter or null if the metric is not related to a channel
+     * @param amount amount
+     */
+    public static void add(Metric metric, String channel, long amount) {
+        if (!enabled) return;
+        totals[metric.ordinal()].add(amount);
+        if (channel == null) return;
+        LongAdder[] adders = channels.get(channel);
+        if (adders == null) adders = channels.computeIfAbsent(channel, name -> newAdders());
+        adders[metric.ordinal()].add(amount);
+    }
+
+    public static void increment(Metric metric) {
+        if (enabled) totals[metric.ordinal()].increment();
+    }
+
+    /**
+     * It starts a timer.
+     * @return start of the timer to be passed to stop()
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : STOPPED;
+    }
+
+    /**
+     * It adds the time elapsed since the start of a timer to a metric.
+     * @param metric timer
+     * @param channel name of a growth parameter or null if the timer is not related to a channel
+     * @param start value returned by start() or by the previous stop()
+     * @return start of the next timer, so that consecutive stages can be timed by a chain of stop() calls
+     */
+    public static long stop(Metric metric, String channel, long start) {
+        if (start == STOPPED) return STOPPED;
+        long now = System.nanoTime();
+        add(metric, channel, now - start);
+        return now;
+    }
+
+    /**
+     * It returns the sum of a metric over all the channels.
+     */
+    public static long getTotal(Metric metric) {
+        return totals[metric.ordinal()].sum();
+    }
+
+    /**
+     * It returns the report of the metrics: the totals of all the metrics and the nonzero metrics of every channel.
+     */
+    public static Map<String, Object> getReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        Map<String, Long> totalValues = new LinkedHashMap<>();
+        for (Metric metric : Metric.values()) totalValues.put(metric.key, totals[metric.ordinal()].sum());
+        report.put("totals", totalValues);
+        Map<String, Map<String, Long>> channelValues = new TreeMap<>();
+        for (Map.Entry<String, LongAdder[]> channel : channels.entrySet()) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (Metric metric : Metric.values()) {
+                long value = channel.getValue()[metric.ordinal()].sum();
+                if (value != 0) values.put(metric.key, value);
+            }
+            channelValues.put(channel.getKey(), values);
+        }
+        report.put("channels", channelValues);
+        return report;
+    }
+
+    /**
+     * It writes the report of the metrics to a JSON file.
+     */
+    public static void writeReport(Path path) throws IOException {
+        Files.write(path, getReportJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String getReportJson() {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(getReport());
+    }
+
+    /**
+     * It sets all the metrics to zero.
+     */
+    public static void resetMetrics() {
+        for (LongAdder adder : totals) adder.reset();
+        channels.clear();
+    }
+
+    /**
+     * It registers the MBean in the platform MBean server unless it is registered already.
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+        }
+        catch (InstanceAlreadyExistsException e) {
+            // registered by another component
+        }
+        catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[METRICS_NUMBER];
+        for (int i = 0; i < METRICS_NUMBER; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    // MBean
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        setMetricsEnabled(enabled);
+    }
+
+    @Override
+    public long getRowsParsed() {
+        return getTotal(Metric.ROWS_PARSED);
+    }
+
+    @Override
+    public long getSamplesDropped() {
+        return getTotal(Metric.SAMPLES_DROPPED);
+    }
+
+    @Override
+    public long getRawSamples() {
+        return getTotal(Metric.RAW_SAMPLES);
+    }
+
+    @Override
+    public long getNodes() {
+        return getTotal(Metric.NODES);
+    }
+
+    @Override
+    public long getLayers() {
+        return getTotal(Metric.LAYERS);
+    }
+
+    @Override
+    public long getMaterialEvaluations() {
+        return getTotal(Metric.MATERIAL_EVALUATIONS);
+    }
+
+    @Override
+    public String getReportAsJson() {
+        return getReportJson();
+    }
+
+    @Override
+    public void reset() {
+        resetMetrics();
+    }
+}
@@ -0,0 +1,27 @@
+package util;
+
+/**
+ * JMX interface of PipelineMetrics. The complete metrics including the ones of the channels are given by the JSON report.
+ */
+public interface PipelineMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getRowsParsed();
+
+    long getSamplesDropped();
+
+    long getRawSamples();
+
+    long getNodes();
+
+    long getLayers();
+
+    long getMaterialEvaluations();
+
+    String getReportAsJson();
+
+    void reset();
+}
@@ -1,25 +1,148 @@
 package util;
 
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
-import java.util.Locale;
+import java.util.GregorianCalendar;
 
 /**
- * Converts time in UNIX-format from long(milliseconds) to a readable "dd.MM.yyyy HH:mm:ss:SSS" string and back
+ * Converts time in UNIX-format from long(milliseconds) to a readable "dd.MM.yyyy HH:mm:ss:SSS" string and back.
+ * The conversions work with the fixed format directly on chars or bytes. Epoch milliseconds of the last used day are cached,
+ * so only the time of day is computed for timestamps of the same day. All the methods are thread-safe.
  */
 public class Time {
 
-    public static long strToMillis45(String strTimestamp) {
-        DateFormat ISO_DATE_FORMAT = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss:SSS", Locale.ENGLISH);
-        long longTimeStamp = 0;
-        try {
-            longTimeStamp =  ISO_DATE_FORMAT.parse(strTimestamp).getTime();
-        } catch (ParseException e) {
-            e.printStackTrace();
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final int TIMESTAMP_LENGTH = 23;
+
+    /**
+     * Immutable description of a day in the default time zone. A regular day lasts exactly 24 hours, i.e. it has no daylight saving transition.
+     */
+    private static final class Day {
+        final int year;
+        final int month;
+        final int dayOfMonth;
+        final long startMillis;
+        final boolean regular;
+
+        Day(int year, int month, int dayOfMonth) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(year, month - 1, dayOfMonth);
+            this.startMillis = calendar.getTimeInMillis();
+            this.year = calendar.get(Calendar.YEAR);
+            this.month = calendar.get(Calendar.MONTH) + 1;
+            this.dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            this.regular = (calendar.getTimeInMillis() - startMillis) == MILLIS_PER_DAY;
+        }
+
+        boolean is(int year, int month, int dayOfMonth) {
+            return (this.dayOfMonth == dayOfMonth) && (this.month == month) && (this.year == year);
+        }
+
+        boolean contains(long timeStamp) {
+            return regular && (timeStamp >= startMillis) && (timeStamp < startMillis + MILLIS_PER_DAY);
+        }
+    }
+
+    private static volatile Day parsedDay = new Day(1970, 1, 1);
+    private static volatile Day formattedDay = parsedDay;
+
+    /**
+     * It converts a string in "dd.MM.yyyy HH:mm:ss:SSS" format to UNIX time.
+     * @param strTimestamp input string
+     * @return UNIX time in milliseconds or 0 if the string is malformed
+     */
+    public static long strToMillis45(CharSequence strTimestamp) {
+        int length = strTimestamp.length();
+        int i = 0;
+        while ((i < length) && (strTimestamp.charAt(i) == ' ')) i++;
+        int day = 0, month = 0, year = 0, hour = 0, minute = 0, second = 0, millis = 0;
+        for (int k = 0; k < 7; k++) {
+            int start = i;
+            int part = 0;
+            char c;
+            while ((i < length) && ((c = strTimestamp.charAt(i)) >= '0') && (c <= '9')) {
+                part = part*10 + (c - '0');
+                i++;
+            }
+            if (i == start) return 0;
+            i++;
+            switch (k) {
+                case 0: day = part; break;
+                case 1: month = part; break;
+                case 2: year = part; break;
+                case 3: hour = part; break;
+                case 4: minute = part; break;
+                case 5: second = part; break;
+                default: millis = part;
+            }
+        }
+        return toMillis(year, month, day, hour, minute, second, millis);
+    }
+
+    /**
+     * It converts a timestamp in "dd.MM.yyyy HH:mm:ss:SSS" format stored as ASCII bytes to UNIX time without creation of a string.
+     * @param bytes array containing the timestamp
+     * @param from index of the first byte of the timestamp
+     * @param to index following the last byte of the timestamp
+     * @return UNIX time in milliseconds or 0 if the timestamp is malformed
+     */
+    public static long bytesToMillis45(byte[] bytes, int from, int to) {
+        int i = from;
+        while ((i < to) && (bytes[i] == ' ')) i++;
+        int day = 0, month = 0, year = 0, hour = 0, minute = 0, second = 0, millis = 0;
+        for (int k = 0; k < 7; k++) {
+            int start = i;
+            int part = 0;
+            byte b;
+            while ((i < to) && ((b = bytes[i]) >= '0') && (b <= '9')) {
+                part = part*10 + (b - '0');
+                i++;
+            }
+            if (i == start) return 0;
+            i++;
+            switch (k) {
+                case 0: day = part; break;
+                case 1: month = part; break;
+                case 2: year = part; break;
+                case 3: hour = part; break;
+                case 4: minute = part; break;
+                case 5: second = part; break;
+                default: millis = part;
+            }
         }
-        return longTimeStamp;
+        return toMillis(year, month, day, hour, minute, second, millis);
+    }
+
+    /**
+     * It converts the date and the time of day to UNIX time using the default time zone. The fields out of their normal ranges are resolved leniently by Calendar,
+     * like SimpleDateFormat does, e.g. 25:00 is 01:00 of the next day.
+     * @return UNIX time in milliseconds
+     */
+    public static long toMillis(int year, int month, int dayOfMonth, int hour, int minute, int second, int millis) {
+        if ((hour < 0) || (hour > 23) || (minute < 0) || (minute > 59) || (second < 0) || (second > 59) || (millis < 0) || (millis > 999))
+            return toMillisLeniently(year, month, dayOfMonth, hour, minute, second, millis);
+        Day day = parsedDay;
+        if (!day.is(year, month, dayOfMonth)) {
+            day = new Day(year, month, dayOfMonth);
+            if (day.is(year, month, dayOfMonth)) parsedDay = day;
+        }
+        if (!day.regular || !day.is(year, month, dayOfMonth)) return toMillisLeniently(year, month, dayOfMonth, hour, minute, second, millis);
+        return day.startMillis + ((hour*60L + minute)*60L + second)*1000L + millis;
+    }
+
+    /**
+     * It converts the date and the time of day to UNIX time by a lenient Calendar, which handles the daylight saving transitions and the fields out of their ranges.
+     */
+    private static long toMillisLeniently(int year, int month, int dayOfMonth, int hour, int minute, int second, int millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, dayOfMonth, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millis);
+        return calendar.getTimeInMillis();
     }
 
     /**
@@ -28,9 +151,51 @@ public class Time {
      * @return string in "dd.MM.yyyy HH:mm:ss:SSS" format
      */
     public static String millisToStr(long longTimeStamp) {
-        Date date = new Date(longTimeStamp);
-        DateFormat formatter = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss:SSS");
-        String strTimestamp = formatter.format(date);
-        return strTimestamp;
+        Day day = formattedDay;
+        if (!day.contains(longTimeStamp)) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(longTimeStamp);
+            int year = calendar.get(Calendar.YEAR);
+            if ((year < 1000) || (year > 9999) || (calendar.get(Calendar.ERA) != GregorianCalendar.AD)) {
+                DateFormat formatter = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss:SSS");
+                return formatter.format(new Date(longTimeStamp));
+            }
+            day = new Day(year, calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+            if (day.contains(longTimeStamp)) formattedDay = day;
+            else return format(day, calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND), calendar.get(Calendar.MILLISECOND));
+        }
+        int timeOfDay = (int) (longTimeStamp - day.startMillis);
+        return format(day, timeOfDay/3600000, timeOfDay/60000%60, timeOfDay/1000%60, timeOfDay%1000);
+    }
+
+    /**
+     * It composes a string in "dd.MM.yyyy HH:mm:ss:SSS" format from the day and the time of day.
+     */
+    private static String format(Day day, int hour, int minute, int second, int millis) {
+        char[] chars = new char[TIMESTAMP_LENGTH];
+        putDigits(chars, 0, day.dayOfMonth, 2);
+        chars[2] = '.';
+        putDigits(chars, 3, day.month, 2);
+        chars[5] = '.';
+        putDigits(chars, 6, day.year, 4);
+        chars[10] = ' ';
+        putDigits(chars, 11, hour, 2);
+        chars[13] = ':';
+        putDigits(chars, 14, minute, 2);
+        chars[16] = ':';
+        putDigits(chars, 17, second, 2);
+        chars[19] = ':';
+        putDigits(chars, 20, millis, 3);
+        return new String(chars);
+    }
+
+    /**
+     * It writes the given number of the least significant decimal digits of the value to the array.
+     */
+    private static void putDigits(char[] chars, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value%10);
+            value /= 10;
+        }
     }
 }
@@ -0,0 +1,42 @@
+package epitaxy.growthconditions;
+
+import com.google.gson.Gson;
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.growthconditions.parameters.SubstrateHeat;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Assignment of the columns of the values file with the column projection: it must give every loaded growth parameter the same column as the assignment of all the growth parameters.
+ */
+public class ColumnMappingTest {
+
+    private static final List<String> CAPTIONS = Arrays.asList("GMpower", "GMtemp", "Pyro");
+
+    @Test
+    public void sharedCaption() {
+        // "GMpower" and "GM" match the first column, which is given to the later one
+        GrowthParameter power = create("GMpower");
+        GrowthParameter shortName = create("GM");
+        GrowthParameter temperature = create("GMtemp");
+        GrowthParameter pyrometer = create("Pyro");
+        List<GrowthParameter> growthParameters = Arrays.asList(power, shortName, temperature, pyrometer);
+        assertArrayEquals(new GrowthParameter[]{shortName, temperature, pyrometer}, FilesMBE.mapColumns(CAPTIONS, growthParameters, false));
+
+        assertArrayEquals(new GrowthParameter[]{null, null, pyrometer},
+                FilesMBE.mapValueColumns(CAPTIONS, growthParameters, Arrays.asList(power, pyrometer)));
+        assertArrayEquals(new GrowthParameter[]{shortName, null, null},
+                FilesMBE.mapValueColumns(CAPTIONS, growthParameters, Collections.singletonList(shortName)));
+        assertArrayEquals(new GrowthParameter[]{shortName, temperature, pyrometer},
+                FilesMBE.mapValueColumns(CAPTIONS, growthParameters, growthParameters));
+    }
+
+    private static GrowthParameter create(String name) {
+        return new Gson().fromJson("{\"name\": \"" + name + "\", \"timeStep_ms\": 1000, \"resamplingError\": 0}", SubstrateHeat.class);
+    }
+}
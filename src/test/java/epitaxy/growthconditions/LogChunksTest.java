@@ -0,0 +1,75 @@
+package epitaxy.growthconditions;
+
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.growthconditions.parameters.Precursor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Chunked parsing of the files of a growth run: the samples thinned by the time steps and the shutter events must be the same as after a single sequential pass,
+ * although the boundaries of small ranges fall within the lines, within the runs of dropped samples and within the runs of unchanged shutter states.
+ */
+public class LogChunksTest {
+
+    private static final long[] CHUNK_SIZES = {61, 997, 65536};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void chunkedParsingOfB081() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B081_SHUTTERS, folder.getRoot().toPath());
+        Data expected = run.parse(null);
+        checkSequentialPass(expected);
+        for (long chunkSize : CHUNK_SIZES) {
+            LogChunks.setChunkSize(chunkSize);
+            try {
+                assertData("sequential ranges of " + chunkSize, expected, run.parse(null));
+                assertData("concurrent ranges of " + chunkSize, expected, run.parse(ForkJoinPool.commonPool()));
+            }
+            finally {
+                LogChunks.setChunkSize(LogChunks.CHUNK_SIZE);
+            }
+        }
+    }
+
+    /**
+     * The run is sampled every second and the time steps of the settings are longer, so the samples must be thinned, and the shutters must be switched.
+     */
+    private static void checkSequentialPass(Data data) {
+        int thinned = 0;
+        int events = 0;
+        for (GrowthParameter growthParameter : data.getGrowthParameters()) {
+            long[] timeStamps = growthParameter.getTimeStamps();
+            for (int i = 1; i < timeStamps.length; i++)
+                assertTrue(growthParameter.getName() + ": time step", timeStamps[i] - timeStamps[i - 1] >= growthParameter.getTimeStep_ms());
+            if ((timeStamps.length > 0) && (growthParameter.getTimeStep_ms() > 1000)) thinned++;
+            if (growthParameter instanceof Precursor) events += ((Precursor) growthParameter).ShuttterEventsToString().split(" - ").length - 1;
+        }
+        assertTrue("no thinned samples", thinned > 0);
+        assertTrue("no shutter events", events > 10);
+    }
+
+    private static void assertData(String message, Data expected, Data actual) {
+        List<GrowthParameter> expectedParameters = expected.getGrowthParameters();
+        List<GrowthParameter> actualParameters = actual.getGrowthParameters();
+        assertEquals(message, expectedParameters.size(), actualParameters.size());
+        for (int k = 0; k < expectedParameters.size(); k++) {
+            GrowthParameter growthParameter = expectedParameters.get(k);
+            String name = message + ": " + growthParameter.getName();
+            assertArrayEquals(name, growthParameter.getTimeStamps(), actualParameters.get(k).getTimeStamps());
+            assertArrayEquals(name, growthParameter.getValues(), actualParameters.get(k).getValues(), 0);
+            if (growthParameter instanceof Precursor)
+                assertEquals(name, ((Precursor) growthParameter).ShuttterEventsToString(), ((Precursor) actualParameters.get(k)).ShuttterEventsToString());
+        }
+    }
+}
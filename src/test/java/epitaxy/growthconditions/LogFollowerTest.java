@@ -0,0 +1,196 @@
+package epitaxy.growthconditions;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.structure.Heterostructure;
+import epitaxy.structure.Layer;
+import epitaxy.structure.Material;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replay of a growth run written to its files piece by piece: LogFollower with Heterostructure.extend() against a one-shot load by FilesMBE.getData().
+ */
+public class LogFollowerTest {
+
+    private static final int APPENDS = 80;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * With the online resampling, the nodes do not depend on how the samples are split between the refreshes, so the incremental heterostructure must have the same layers.
+     */
+    @Test
+    public void incrementalLayersOfB052() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B052_SHUTTERS, folder.newFolder("source").toPath());
+        Path settings = writeSettings(run.getSettings(), "ONLINE");
+        Replay replay = new Replay(run, settings);
+        Heterostructure heterostructure = null;
+        int extensions = 0;
+        while (replay.append()) {
+            replay.follower.refresh();
+            long settledTimeStamp = replay.follower.getSettledTimeStamp();
+            if (settledTimeStamp == Long.MIN_VALUE) continue;
+            if (heterostructure == null) heterostructure = new Heterostructure(replay.follower.getData(), settledTimeStamp);
+            else heterostructure.extend(settledTimeStamp);
+            extensions++;
+        }
+        assertTrue("the heterostructure has not been extended", (heterostructure != null) && (extensions > 10));
+        int settledLayers = heterostructure.getLayers().size();
+        heterostructure.extend(Long.MAX_VALUE);
+
+        FilesMBE.setRunCaching(false);
+        try {
+            Heterostructure expected = new Heterostructure(FilesMBE.getData(replay.values.toString(), replay.shutters.toString(), settings.toString()));
+            assertTrue("the layers are built after the end of the run only", settledLayers > expected.getLayers().size()/2);
+            assertLayers(expected.getLayers(), heterostructure.getLayers());
+        }
+        finally {
+            FilesMBE.setRunCaching(true);
+        }
+    }
+
+    /**
+     * With the batch resampling, the nodes and the intervals up to the settled timestamp of a followed growth parameter must not be changed by the following refreshes.
+     */
+    @Test
+    public void settledIntervalsOfB052() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B052_SHUTTERS, folder.newFolder("source").toPath());
+        Replay replay = new Replay(run, writeSettings(run.getSettings(), "BATCH"));
+        Map<GrowthParameter, TreeMap<Long, Long>> settledIntervals = new HashMap<>();
+        Map<GrowthParameter, TreeMap<Long, Double>> settledNodes = new HashMap<>();
+        Map<GrowthParameter, Long> settledTimeStamps = new HashMap<>();
+        while (replay.append()) {
+            replay.follower.refresh();
+            for (GrowthParameter growthParameter : replay.follower.getData().getRequiredParameters()) {
+                long settledTimeStamp = growthParameter.getSettledTimeStamp();
+                if (settledTimeStamp == Long.MAX_VALUE) continue;
+                settledTimeStamps.merge(growthParameter, settledTimeStamp, Math::max);
+                TreeMap<Long, Long> intervals = settledIntervals.computeIfAbsent(growthParameter, parameter -> new TreeMap<>());
+                for (Map.Entry<Long, Long> interval : growthParameter.getIntervals().headMap(settledTimeStamp, true).entrySet())
+                    if (interval.getValue() <= settledTimeStamp) intervals.put(interval.getKey(), interval.getValue());
+                TreeMap<Long, Double> nodes = settledNodes.computeIfAbsent(growthParameter, parameter -> new TreeMap<>());
+                for (int i = 0; (i < growthParameter.size()) && (growthParameter.getTimeStamp(i) <= settledTimeStamp); i++)
+                    nodes.put(growthParameter.getTimeStamp(i), growthParameter.getValue(i));
+            }
+        }
+        int checked = 0;
+        for (GrowthParameter growthParameter : settledIntervals.keySet()) {
+            TreeMap<Long, Long> intervals = growthParameter.getIntervals();
+            for (Map.Entry<Long, Long> interval : settledIntervals.get(growthParameter).entrySet())
+                assertEquals(growthParameter.getName() + ": interval from " + interval.getKey(), interval.getValue(), intervals.get(interval.getKey()));
+            TreeMap<Long, Double> nodes = settledNodes.get(growthParameter);
+            TreeMap<Long, Double> finalNodes = new TreeMap<>();
+            for (int i = 0; i < growthParameter.size(); i++) finalNodes.put(growthParameter.getTimeStamp(i), growthParameter.getValue(i));
+            assertEquals(growthParameter.getName() + ": nodes", nodes, finalNodes.headMap(settledTimeStamps.get(growthParameter), true));
+            checked += nodes.size();
+        }
+        assertTrue("no settled nodes", checked > 0);
+    }
+
+    private static void assertLayers(List<Layer> expected, List<Layer> actual) {
+        assertEquals("number of layers", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            String layer = "layer " + i;
+            assertMaterial(layer + " start", expected.get(i).getStartMaterial(), actual.get(i).getStartMaterial());
+            assertMaterial(layer + " stop", expected.get(i).getStopMaterial(), actual.get(i).getStopMaterial());
+            assertClose(layer + " thickness", expected.get(i).getNominalThickness(), actual.get(i).getNominalThickness());
+        }
+    }
+
+    private static void assertMaterial(String message, Material expected, Material actual) {
+        assertEquals(message + " timestamp", expected.getTimeStamp(), actual.getTimeStamp());
+        assertEquals(message + " type", expected.getMaterialType(), actual.getMaterialType());
+        assertEquals(message + " formula", expected.getFormula(), actual.getFormula());
+        assertEquals(message + " dopants", expected.getDopants(), actual.getDopants());
+        assertClose(message + " pyrometer temperature", expected.getPyrometerTemperature(), actual.getPyrometerTemperature());
+        assertClose(message + " heater power", expected.getHeaterPower(), actual.getHeaterPower());
+        assertClose(message + " InN", expected.getxInN(), actual.getxInN());
+        assertClose(message + " AlN", expected.getyAlN(), actual.getyAlN());
+        assertClose(message + " growth rate", expected.getGrowthRate(), actual.getGrowthRate());
+    }
+
+    /**
+     * The tables of the effusion rates depend on the ranges of the cell temperatures seen by the refreshes, so the values are compared within the error of the tables.
+     */
+    private static void assertClose(String message, double expected, double actual) {
+        if (Double.isNaN(expected)) assertTrue(message, Double.isNaN(actual));
+        else assertEquals(message, expected, actual, 1e-6*Math.max(1, Math.abs(expected)));
+    }
+
+    /**
+     * It writes the settings with the given resampling method of all the growth parameters.
+     */
+    private Path writeSettings(Path settings, String resamplingMethod) throws IOException {
+        String json = new String(Files.readAllBytes(settings), StandardCharsets.UTF_8);
+        if (json.startsWith("﻿")) json = json.substring(1);
+        JsonObject root = new JsonParser().parse(json).getAsJsonObject();
+        for (Map.Entry<String, JsonElement> entry : root.entrySet())
+            if (entry.getValue().isJsonObject()) entry.getValue().getAsJsonObject().addProperty("resamplingMethod", resamplingMethod);
+        Path path = folder.getRoot().toPath().resolve("settings_" + resamplingMethod + ".json");
+        Files.write(path, root.toString().getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    /**
+     * Files of a run growing by pieces of random length which are cut at arbitrary bytes.
+     */
+    private class Replay {
+        final Path values;
+        final Path shutters;
+        final LogFollower follower;
+        private final byte[][] sources;
+        private final Path[] targets;
+        private final int[] written = new int[2];
+        private final Random random = new Random(7);
+        private int appends;
+
+        Replay(RunFixture run, Path settings) throws IOException {
+            Path directory = folder.newFolder("run").toPath();
+            values = directory.resolve("values.csv");
+            shutters = directory.resolve("shutters.csv");
+            sources = new byte[][]{Files.readAllBytes(run.getValues()), Files.readAllBytes(run.getShutters())};
+            targets = new Path[]{values, shutters};
+            for (Path target : targets) Files.createFile(target);
+            follower = new LogFollower(values.toString(), shutters.toString(), settings.toString());
+        }
+
+        /**
+         * It appends the next pieces of both files.
+         * @return "false" if the files are complete
+         */
+        boolean append() throws IOException {
+            if (appends == APPENDS) return false;
+            appends++;
+            for (int f = 0; f < 2; f++) {
+                int end = (appends == APPENDS) ? sources[f].length
+                        : (int) Math.min(sources[f].length, (long) sources[f].length*appends/APPENDS + random.nextInt(1000));
+                if (end <= written[f]) continue;
+                try (OutputStream output = Files.newOutputStream(targets[f], StandardOpenOption.APPEND)) {
+                    output.write(sources[f], written[f], end - written[f]);
+                }
+                written[f] = end;
+            }
+            return true;
+        }
+    }
+}
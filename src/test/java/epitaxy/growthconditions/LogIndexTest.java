@@ -0,0 +1,125 @@
+package epitaxy.growthconditions;
+
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.growthconditions.parameters.Precursor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.Time;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Windowed parsing of the files of a growth run from the offsets found by their sparse indexes: the samples and the shutter events must be the same as after
+ * a single sequential pass which skips the lines before the window, although the entries of small index intervals and the boundaries of small ranges fall within the runs of lines.
+ */
+public class LogIndexTest {
+
+    private static final int[] INTERVALS = {1, 7, 61, LogIndex.INTERVAL};
+    private static final long CHUNK_SIZE = 997;
+    private static final String SHUTTER_COLUMN = "N2";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void windowedParsingOfB081() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B081_SHUTTERS, folder.getRoot().toPath());
+        long[] openPeriod = getOpenPeriod(run.getShutters());
+        long openedBefore = (openPeriod[0] + openPeriod[1])/2 + 1;
+        long[][] windows = {
+                {openedBefore, openedBefore + 3600000},                             // the shutter is opened before the window
+                {openedBefore, Long.MAX_VALUE},
+                {openPeriod[0], openPeriod[1]},                                     // the window begins at the line opening the shutter
+                {1, run.getStartTimeStamp() + 600000},                              // the window begins before the first line
+                {run.getStopTimeStamp() - 600000, run.getStopTimeStamp() + 600000}};
+        for (long[] window : windows) {
+            Data expected = run.parse(null, window[0], window[1], false);
+            if (window[0] == openedBefore) checkOpenedBefore(expected, window[0]);
+            for (int interval : INTERVALS) {
+                String message = "window from " + Time.millisToStr(window[0]) + ", index interval " + interval;
+                deleteIndexes(run);
+                LogIndex.setInterval(interval);
+                LogChunks.setChunkSize(CHUNK_SIZE);
+                try {
+                    assertData(message + ", sequential ranges", expected, run.parse(null, window[0], window[1], true));
+                    assertData(message + ", concurrent ranges", expected, run.parse(ForkJoinPool.commonPool(), window[0], window[1], true));
+                }
+                finally {
+                    LogIndex.setInterval(LogIndex.INTERVAL);
+                    LogChunks.setChunkSize(LogChunks.CHUNK_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * It returns the timestamps of the lines opening and closing the longest open period of the shutter.
+     */
+    private static long[] getOpenPeriod(Path shutters) throws IOException {
+        List<String> lines = Files.readAllLines(shutters, StandardCharsets.UTF_8);
+        List<String> captions = Arrays.asList(lines.get(0).split(";"));
+        int column = -1;
+        for (int j = 1; j < captions.size(); j++)
+            if (captions.get(j).contains(SHUTTER_COLUMN)) column = j;
+        long[] period = new long[2];
+        long opening = Long.MIN_VALUE;
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(";");
+            long timeStamp = Time.strToMillis45(fields[0]);
+            boolean opened = fields[column].trim().equalsIgnoreCase("Вкл");
+            if (opened && (opening == Long.MIN_VALUE)) opening = timeStamp;
+            else if (!opened && (opening != Long.MIN_VALUE)) {
+                if (timeStamp - opening > period[1] - period[0]) period = new long[]{opening, timeStamp};
+                opening = Long.MIN_VALUE;
+            }
+        }
+        assertTrue("no open period", period[1] - period[0] > 60000);
+        return period;
+    }
+
+    /**
+     * The shutter opened before the window must be opened at the first line of the window, which is the first shutter event.
+     */
+    private static void checkOpenedBefore(Data data, long startTimeStamp) {
+        for (GrowthParameter growthParameter : data.getGrowthParameters())
+            if (growthParameter.getName().equals(SHUTTER_COLUMN)) {
+                String events = ((Precursor) growthParameter).ShuttterEventsToString();
+                String firstEvent = events.substring(events.indexOf('{') + 1, events.indexOf(", "));
+                assertTrue(events, firstEvent.endsWith(" - true"));
+                long firstLine = Time.strToMillis45(firstEvent.substring(0, firstEvent.indexOf(" - ")));
+                assertTrue(events, (firstLine >= startTimeStamp) && (firstLine < startTimeStamp + 1000));
+                return;
+            }
+        throw new AssertionError("no shutter " + SHUTTER_COLUMN);
+    }
+
+    private static void deleteIndexes(RunFixture run) throws IOException {
+        Files.deleteIfExists(LogIndex.getPath(run.getValues()));
+        Files.deleteIfExists(LogIndex.getPath(run.getShutters()));
+    }
+
+    private static void assertData(String message, Data expected, Data actual) {
+        List<GrowthParameter> expectedParameters = expected.getGrowthParameters();
+        List<GrowthParameter> actualParameters = actual.getGrowthParameters();
+        assertEquals(message, expectedParameters.size(), actualParameters.size());
+        for (int k = 0; k < expectedParameters.size(); k++) {
+            GrowthParameter growthParameter = expectedParameters.get(k);
+            String name = message + ": " + growthParameter.getName();
+            assertArrayEquals(name, growthParameter.getTimeStamps(), actualParameters.get(k).getTimeStamps());
+            assertArrayEquals(name, growthParameter.getValues(), actualParameters.get(k).getValues(), 0);
+            if (growthParameter instanceof Precursor)
+                assertEquals(name, ((Precursor) growthParameter).ShuttterEventsToString(), ((Precursor) actualParameters.get(k)).ShuttterEventsToString());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package epitaxy.growthconditions;
+
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Loading of a growth run with a damaged sidecar: the sidecar must be dropped and the files parsed, giving the same samples as parsing without the sidecar.
+ */
+public class RunCacheTest {
+
+    private static final int CAPTIONS_OFFSET = 2*Integer.BYTES + 6*Long.BYTES;      // the header and SourceStamps of both files
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void damagedSidecars() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B081_SHUTTERS, folder.getRoot().toPath());
+        Data expected = load(run, false);
+        load(run, true);
+        Path sidecar = RunCache.getPath(run.getValues());
+        byte[] original = Files.readAllBytes(sidecar);
+        int firstColumn = getFirstColumnOffset(original);
+
+        int[] offsets = {CAPTIONS_OFFSET, CAPTIONS_OFFSET + Integer.BYTES, firstColumn};
+        int[] counts = {-1, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE/Long.BYTES + 1, original.length};
+        for (int offset : offsets)
+            for (int count : counts) {
+                byte[] damaged = original.clone();
+                ByteBuffer.wrap(damaged).putInt(offset, count);
+                check(run, damaged, expected, "count " + count + " at " + offset);
+            }
+        for (int length : new int[]{0, 7, CAPTIONS_OFFSET + 2, firstColumn + 3, original.length/2, original.length - 1})
+            check(run, Arrays.copyOf(original, length), expected, "length " + length);
+        Random random = new Random(1);
+        for (int k = 0; k < 20; k++) {
+            byte[] damaged = original.clone();
+            for (int i = CAPTIONS_OFFSET; i < firstColumn + Integer.BYTES; i++) damaged[i] = (byte) random.nextInt();
+            check(run, damaged, expected, "random captions " + k);
+        }
+    }
+
+    private void check(RunFixture run, byte[] damaged, Data expected, String message) throws IOException {
+        Path sidecar = RunCache.getPath(run.getValues());
+        Files.write(sidecar, damaged);
+        assertData(message, expected, load(run, true));
+        assertNotNull(message + ": the sidecar is not rewritten", RunCache.open(run.getValues(), run.getShutters()));
+    }
+
+    private static Data load(RunFixture run, boolean caching) throws IOException {
+        FilesMBE.setRunCaching(caching);
+        try {
+            return run.load();
+        }
+        finally {
+            FilesMBE.setRunCaching(true);
+        }
+    }
+
+    private static void assertData(String message, Data expected, Data actual) {
+        List<GrowthParameter> expectedParameters = expected.getGrowthParameters();
+        List<GrowthParameter> actualParameters = actual.getGrowthParameters();
+        assertEquals(message, expectedParameters.size(), actualParameters.size());
+        for (int k = 0; k < expectedParameters.size(); k++) {
+            GrowthParameter growthParameter = expectedParameters.get(k);
+            String name = message + ": " + growthParameter.getName();
+            assertArrayEquals(name, growthParameter.getTimeStamps(), actualParameters.get(k).getTimeStamps());
+            for (int i = 0; i < growthParameter.size(); i++)
+                assertEquals(name, Double.doubleToLongBits(growthParameter.getValue(i)), Double.doubleToLongBits(actualParameters.get(k).getValue(i)));
+            assertEquals(name, growthParameter.getIntervals(), actualParameters.get(k).getIntervals());
+        }
+    }
+
+    /**
+     * It returns the offset of the number of samples of the first column, which follows the captions of the values file and the flag of their order.
+     */
+    private static int getFirstColumnOffset(byte[] sidecar) {
+        ByteBuffer buffer = ByteBuffer.wrap(sidecar);
+        buffer.position(CAPTIONS_OFFSET);
+        int count = buffer.getInt();
+        for (int j = 0; j < count; j++) {
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + length);
+        }
+        return buffer.position() + 1;
+    }
+}
@@ -0,0 +1,162 @@
+package epitaxy.growthconditions;
+
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.growthconditions.parameters.Precursor;
+import util.Time;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A growth run of resources/input for the tests. The repository keeps the shutter files of the runs but not their values files, so a values file covering
+ * the shutter file is generated: the cell temperatures, the flows, the heater power and the pyrometer temperature drift slowly with noise and are sampled every second.
+ * The shutter file is copied next to the values file, so the sidecars of the run are written to the same directory.
+ * The runs use the settings of B081, because the settings of B052 do not match the Data fields.
+ */
+public class RunFixture {
+
+    public static final String B052_SHUTTERS = "resources/input/B052/shutters.csv";
+    public static final String B081_SHUTTERS = "resources/input/B081/B081_shutters.csv";
+    public static final String SETTINGS = "resources/input/B081/B081_settings.json";
+
+    private static final String CAPTIONS = "﻿Дата Время;Al;Ga;In;Si;Mg;N2;NH3;SiH4;GMpower;GMtemp;Pyro;Vacuum";
+    private static final long SAMPLE_PERIOD = 1000;
+
+    private final Path values;
+    private final Path shutters;
+    private final Path settings;
+    private final long startTimeStamp;
+    private final long stopTimeStamp;
+
+    private RunFixture(Path values, Path shutters, Path settings, long startTimeStamp, long stopTimeStamp) {
+        this.values = values;
+        this.shutters = shutters;
+        this.settings = settings;
+        this.startTimeStamp = startTimeStamp;
+        this.stopTimeStamp = stopTimeStamp;
+    }
+
+    /**
+     * It writes the values file of a run to a directory.
+     * @param shutterFilePath shutter file of the run
+     * @param directory directory for the files of the run
+     * @return RunFixture object
+     * @throws IOException
+     */
+    public static RunFixture create(String shutterFilePath, Path directory) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(shutterFilePath), StandardCharsets.UTF_8);
+        long startTimeStamp = getTimeStamp(lines.get(1));
+        long stopTimeStamp = getTimeStamp(lines.get(lines.size() - 1));
+        Path values = directory.resolve("values.csv");
+        Random random = new Random(1);
+        try (BufferedWriter writer = Files.newBufferedWriter(values, StandardCharsets.UTF_8)) {
+            writer.write(CAPTIONS);
+            writer.newLine();
+            int i = 0;
+            for (long timeStamp = startTimeStamp; timeStamp <= stopTimeStamp; timeStamp += SAMPLE_PERIOD, i++) {
+                double hours = i/3600.0;
+                double[] row = {1000 + 50*Math.sin(hours) + 0.3*random.nextDouble(), 900 + (i/2000)*10 + 0.3*random.nextDouble(), 700, 1200, 400,
+                        ((i/1500)%2 == 1) ? 300 : 0, 100 + random.nextDouble(), 0, 30 + (i/3000)*2 + 0.1*random.nextDouble(), 700 + random.nextDouble(),
+                        650 + 0.01*i + 2*random.nextDouble(), 1e-9};
+                StringBuilder line = new StringBuilder(Time.millisToStr(timeStamp));
+                for (int k = 0; k < row.length; k++) {
+                    line.append(';');
+                    if ((i%997 != 5) || (k != 3)) line.append(String.format(Locale.ROOT, "%.3f", row[k]).replace('.', ','));
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+        Path shutters = Files.copy(Paths.get(shutterFilePath), directory.resolve(Paths.get(shutterFilePath).getFileName()));
+        return new RunFixture(values, shutters, Paths.get(SETTINGS), startTimeStamp, stopTimeStamp);
+    }
+
+    private static long getTimeStamp(String line) {
+        return Time.strToMillis45(line.substring(0, line.indexOf(';')));
+    }
+
+    public Path getValues() {
+        return values;
+    }
+
+    public Path getShutters() {
+        return shutters;
+    }
+
+    public Path getSettings() {
+        return settings;
+    }
+
+    public long getStartTimeStamp() {
+        return startTimeStamp;
+    }
+
+    public long getStopTimeStamp() {
+        return stopTimeStamp;
+    }
+
+    /**
+     * It loads the whole run by FilesMBE.getData().
+     */
+    public Data load() throws IOException {
+        return FilesMBE.getData(values.toString(), shutters.toString(), settings.toString());
+    }
+
+    /**
+     * It parses the whole files of the run (see parse(ForkJoinPool, long, long, boolean)).
+     */
+    public Data parse(ForkJoinPool pool) throws IOException {
+        return parse(pool, 0, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * It parses the files of the run within a time interval by LogChunks like FilesMBE.getData() does, but leaves the growth parameters unprocessed,
+     * so they keep the raw samples thinned by the time steps. All the columns are parsed.
+     * @param pool pool parsing the ranges or null if the ranges must be parsed one after another
+     * @param startTimeStamp beginning of the time interval
+     * @param stopTimeStamp ending of the time interval
+     * @param seek "true" - the files are parsed from the offsets found by their LogIndexes; "false" - from the first lines
+     * @return Data object with the raw samples and the shutter events
+     */
+    public Data parse(ForkJoinPool pool, long startTimeStamp, long stopTimeStamp, boolean seek) throws IOException {
+        Data data = FilesMBE.getSettings(settings.toString());
+        List<GrowthParameter> growthParameters = data.getGrowthParameters();
+        GrowthParameter[] valueColumns;
+        long dataOffset;
+        try (LogScanner scanner = new LogScanner(values)) {
+            valueColumns = FilesMBE.mapValueColumns(scanner.readCaptions(), growthParameters, growthParameters);
+            dataOffset = scanner.getNextLineOffset();
+        }
+        if (seek) dataOffset = LogIndex.get(values, dataOffset, pool).getOffset(startTimeStamp);
+        LogChunks.process(values, dataOffset, pool,
+                scanner -> FilesMBE.parseValues(scanner, valueColumns, startTimeStamp, stopTimeStamp),
+                chunk -> {
+                    FilesMBE.appendValues(valueColumns, chunk);
+                    return !chunk.stopped;
+                });
+        int[] columnBits;
+        List<Precursor> precursors = new ArrayList<>();
+        try (LogScanner scanner = new LogScanner(shutters)) {
+            columnBits = FilesMBE.getColumnBits(FilesMBE.mapColumns(scanner.readCaptions(), growthParameters, true), precursors);
+            dataOffset = scanner.getNextLineOffset();
+        }
+        if (seek) dataOffset = LogIndex.get(shutters, dataOffset, pool).getOffset(startTimeStamp);
+        long[] previousState = new long[1];
+        LogChunks.process(shutters, dataOffset, pool,
+                scanner -> FilesMBE.parseShutters(scanner, columnBits, startTimeStamp, stopTimeStamp),
+                chunk -> {
+                    previousState[0] = FilesMBE.appendShutterEvents(precursors, chunk, previousState[0]);
+                    return !chunk.stopped;
+                });
+        return data;
+    }
+}
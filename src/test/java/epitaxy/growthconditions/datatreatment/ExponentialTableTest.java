@@ -0,0 +1,63 @@
+package epitaxy.growthconditions.datatreatment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Interpolation of the function a*exp(-b/x) by the table: the relative error must not exceed the bound given to the table at any point of any interval,
+ * and the arguments out of the range must be calculated exactly.
+ */
+public class ExponentialTableTest {
+
+    private static final int POINTS_PER_INTERVAL = 64;
+
+    // a, b, min, max: effusion of the cells over their ranges, a steep exponent near the lowest argument, desorption-like growth with x, a constant
+    private static final double[][] FUNCTIONS = {
+            {5e9, 20000, 300, 1400},
+            {3e12, 35000, 600, 1300},
+            {1e-3, 40000, 900, 950},
+            {1e-3, -3000, 300, 1200},
+            {2.5, 0, 1, 1000}};
+    private static final double[] RELATIVE_ERRORS = {1e-3, 1e-5, 1e-7};
+
+    @Test
+    public void relativeErrorWithinBound() {
+        for (double[] function : FUNCTIONS) {
+            double a = function[0];
+            double b = function[1];
+            double min = function[2];
+            double max = function[3];
+            for (double relativeError : RELATIVE_ERRORS) {
+                String message = "a = " + a + ", b = " + b + ", relative error " + relativeError;
+                ExponentialTable table = ExponentialTable.create(a, b, min, max, relativeError);
+                assertNotNull(message, table);
+                assertTrue(message, table.covers(min, max));
+                int intervals = table.size() - 1;
+                double step = (max - min)/intervals;
+                for (int i = 0; i < intervals; i++) {
+                    for (int j = 0; j <= POINTS_PER_INTERVAL; j++) {
+                        double x = (i == intervals - 1) && (j == POINTS_PER_INTERVAL) ? max : min + (i + (double) j/POINTS_PER_INTERVAL)*step;
+                        double exact = a*Math.exp(-b/x);
+                        assertEquals(message + ", x = " + x, exact, table.getValue(x), relativeError*exact);
+                    }
+                }
+                for (double x : new double[]{min/2, Math.nextDown(min), Math.nextUp(max), 2*max})
+                    assertEquals(message + ", x = " + x, a*Math.exp(-b/x), table.getValue(x), 0);
+            }
+        }
+    }
+
+    @Test
+    public void tableIsNotNeeded() {
+        assertNull(ExponentialTable.create(0, 20000, 300, 1400, 1e-7));
+        assertNull(ExponentialTable.create(5e9, 20000, 0, 1400, 1e-7));
+        assertNull(ExponentialTable.create(5e9, 20000, 300, 300, 1e-7));
+        assertNull(ExponentialTable.create(5e9, 20000, 300, Double.POSITIVE_INFINITY, 1e-7));
+        assertNull(ExponentialTable.create(5e9, 20000, 300, 1400, 0));
+        assertNull("larger than " + ExponentialTable.MAX_SIZE + " points", ExponentialTable.create(5e9, 20000, 1, 1400, 1e-7));
+    }
+}
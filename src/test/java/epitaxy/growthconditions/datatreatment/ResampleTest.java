@@ -0,0 +1,138 @@
+package epitaxy.growthconditions.datatreatment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Regression test of Resample.getNodes() against the original algorithm (BaselineResample): the convex hull of the rough approximation and the prefix sums
+ * of the optimization must select the same nodes, including the series whose deviations and RSS values are tied within the rounding errors.
+ */
+public class ResampleTest {
+
+    private static final long START = 1524744629668L;
+    private static final int[] SIZES = {2, 3, 10, 63, 64, 65, 66, 130, 1000, 5000};
+
+    @Test
+    public void noise() {
+        Random random = new Random(1);
+        for (int size : SIZES)
+            for (int k = 0; k < 5; k++) {
+                long[] timeStamps = getTimeStamps(size, 1000, 0);
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) values[i] = 700 + random.nextGaussian();
+                check("noise " + size, timeStamps, values, 0.5 + k);
+            }
+    }
+
+    @Test
+    public void randomWalk() {
+        Random random = new Random(2);
+        for (int size : SIZES)
+            for (double resamplingError : new double[]{0.01, 0.3, 2}) {
+                long[] timeStamps = getTimeStamps(size, 1000, 300);
+                double[] values = new double[size];
+                double value = 900;
+                for (int i = 0; i < size; i++) values[i] = (value += 0.2*random.nextGaussian());
+                check("random walk " + size, timeStamps, values, resamplingError);
+            }
+    }
+
+    @Test
+    public void plateaus() {
+        Random random = new Random(3);
+        for (int size : SIZES) {
+            long[] timeStamps = getTimeStamps(size, 1000, 0);
+            double[] values = new double[size];
+            double value = 0;
+            for (int i = 0; i < size; i++) {
+                if (random.nextInt(50) == 0) value = 100*random.nextInt(10);
+                values[i] = value;
+            }
+            check("plateaus " + size, timeStamps, values, 0.1);
+            // a ramp between two plateaus
+            for (int i = 0; i < size; i++) values[i] = Math.max(0, Math.min(50, i - size/3));
+            check("ramp " + size, timeStamps, values, 0.1);
+        }
+    }
+
+    /**
+     * The deviations of the points from the trial lines are equal to the resampling error, or differ from it by the rounding errors.
+     */
+    @Test
+    public void deviationsEqualToError() {
+        Random random = new Random(4);
+        for (int size : SIZES) {
+            long[] timeStamps = getTimeStamps(size, 1000, 0);
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) values[i] = 0.25*i + (((i%7) == 3) ? 0.5 : 0) - (((i%11) == 5) ? 0.5 : 0);
+            check("exact deviations " + size, timeStamps, values, 0.5);
+            // a ramp with bumps of exactly the resampling error, so every trial line through two points of the ramp is tied with the bumps
+            for (int k = 0; k < 20; k++) {
+                double slope = (random.nextBoolean() ? 1 : -1)*1e-3*random.nextDouble();
+                double offset = 1000*random.nextDouble();
+                int period = 2 + random.nextInt(10);
+                for (int i = 0; i < size; i++) values[i] = offset + slope*(timeStamps[i] - START) + (((i%period) == period/2) ? 0.5 : 0);
+                check("bumped ramp " + size + " slope " + slope, timeStamps, values, 0.5);
+            }
+            for (int i = 0; i < size; i++) values[i] = 650 + 0.001*i + 0.5*random.nextInt(3);
+            check("quantized deviations " + size, timeStamps, values, 0.5);
+            for (int i = 0; i < size; i++) values[i] = 1e-3*(i%2) + 1e-3*i/size;
+            check("alternating " + size, timeStamps, values, 1e-3);
+            for (int i = 0; i < size; i++) values[i] = 0.1*Math.round(10*(30 + Math.sin(i/20.0) + 0.05*random.nextGaussian()));
+            check("sensor " + size, timeStamps, values, 0.1);
+        }
+    }
+
+    /**
+     * Repeated timestamps give infinite or undefined slopes, and NaN values give undefined deviations and RSS values.
+     */
+    @Test
+    public void degenerateSamples() {
+        Random random = new Random(5);
+        for (int size : SIZES) {
+            if (size < 3) continue;
+            long[] timeStamps = getTimeStamps(size, 1000, 0);
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) values[i] = 10 + random.nextGaussian();
+            for (int i = 1; i < size; i += 17) timeStamps[i] = timeStamps[i - 1];
+            check("repeated timestamps " + size, timeStamps, values, 0.5);
+            timeStamps = getTimeStamps(size, 1000, 0);
+            values[size/2] = Double.NaN;
+            check("NaN " + size, timeStamps, values, 0.5);
+        }
+    }
+
+    @Test
+    public void noSamples() {
+        assertNull(Resample.getNodes(new long[0], new double[0], 0, 0.5));
+    }
+
+    private static void check(String message, long[] timeStamps, double[] values, double resamplingError) {
+        List<Long> timeStampList = new ArrayList<>();
+        List<Double> valueList = new ArrayList<>();
+        for (int i = 0; i < timeStamps.length; i++) {
+            timeStampList.add(timeStamps[i]);
+            valueList.add(values[i]);
+        }
+        List<Integer> expected = BaselineResample.getNodes(timeStampList, valueList, resamplingError);
+        int[] expectedNodes = new int[expected.size()];
+        for (int i = 0; i < expectedNodes.length; i++) expectedNodes[i] = expected.get(i);
+        assertArrayEquals(message + ", error " + resamplingError, expectedNodes, Resample.getNodes(timeStamps, values, timeStamps.length, resamplingError));
+    }
+
+    /**
+     * It returns timestamps of a run sampled with the given period and random jitter.
+     */
+    private static long[] getTimeStamps(int size, long period, int jitter) {
+        Random random = new Random(size);
+        long[] timeStamps = new long[size];
+        for (int i = 0; i < size; i++) timeStamps[i] = START + i*period + ((jitter > 0) ? random.nextInt(jitter) : 0);
+        return timeStamps;
+    }
+}
@@ -0,0 +1,128 @@
+package epitaxy.growthconditions.datatreatment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Single-pass approximation by SwingDoor: every sample of the stream must deviate from the polyline of the emitted nodes by not more than resamplingError,
+ * the nodes must be put at the timestamps of the samples, and the samples which are not later than the previous one must be ignored.
+ */
+public class SwingDoorTest {
+
+    private static final long START = 1524744629668L;
+    private static final int[] SIZES = {1, 2, 3, 10, 100, 1000, 10000};
+    private static final double[] RESAMPLING_ERRORS = {0, 0.01, 0.3, 2};
+    private static final double ROUNDING = 1e-9;
+
+    @Test
+    public void noise() {
+        Random random = new Random(1);
+        for (int size : SIZES)
+            for (double resamplingError : RESAMPLING_ERRORS) {
+                long[] timeStamps = getTimeStamps(random, size, 1000, 0);
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) values[i] = 700 + random.nextGaussian();
+                check("noise " + size, timeStamps, values, resamplingError);
+            }
+    }
+
+    @Test
+    public void randomWalk() {
+        Random random = new Random(2);
+        for (int size : SIZES)
+            for (double resamplingError : RESAMPLING_ERRORS) {
+                long[] timeStamps = getTimeStamps(random, size, 1000, 300);
+                double[] values = new double[size];
+                double value = 900;
+                for (int i = 0; i < size; i++) values[i] = (value += 0.2*random.nextGaussian());
+                check("random walk " + size, timeStamps, values, resamplingError);
+            }
+    }
+
+    /**
+     * Plateaus with jumps and ramps with a small noise, the timestamps of the stream repeat sometimes.
+     */
+    @Test
+    public void plateausAndRamps() {
+        Random random = new Random(3);
+        for (int size : SIZES)
+            for (double resamplingError : RESAMPLING_ERRORS) {
+                long[] timeStamps = getTimeStamps(random, size, 1000, 1000);
+                double[] values = new double[size];
+                double value = 0;
+                double slope = 0;
+                for (int i = 0; i < size; i++) {
+                    if (random.nextInt(50) == 0) value = 100*random.nextInt(10);
+                    if (random.nextInt(50) == 0) slope = (random.nextInt(3) - 1)*random.nextDouble();
+                    value += slope;
+                    values[i] = value + 1e-3*random.nextGaussian();
+                }
+                check("plateaus and ramps " + size, timeStamps, values, resamplingError);
+            }
+    }
+
+    /**
+     * A straight line needs the nodes at its ends only.
+     */
+    @Test
+    public void line() {
+        long[] timeStamps = getTimeStamps(new Random(4), 1000, 1000, 0);
+        double[] values = new double[timeStamps.length];
+        for (int i = 0; i < values.length; i++) values[i] = 600 + 1e-3*(timeStamps[i] - START);
+        List<double[]> nodes = check("line", timeStamps, values, 0.01);
+        assertEquals("nodes of a line", 2, nodes.size());
+    }
+
+    /**
+     * It feeds the samples to SwingDoor, collects the emitted nodes and the end of the last segment, and checks the deviations of the accepted samples from the polyline.
+     * @return nodes as pairs of timestamp and value
+     */
+    private static List<double[]> check(String message, long[] timeStamps, double[] values, double resamplingError) {
+        message += ", resampling error " + resamplingError;
+        SwingDoor swingDoor = new SwingDoor(resamplingError);
+        List<double[]> nodes = new ArrayList<>();
+        List<Integer> accepted = new ArrayList<>();
+        long lastTimeStamp = Long.MIN_VALUE;
+        for (int i = 0; i < timeStamps.length; i++) {
+            if (swingDoor.add(timeStamps[i], values[i])) nodes.add(new double[]{swingDoor.getNodeTimeStamp(), swingDoor.getNodeValue()});
+            if (timeStamps[i] > lastTimeStamp) accepted.add(i);
+            lastTimeStamp = Math.max(lastTimeStamp, timeStamps[i]);
+            assertEquals(message, lastTimeStamp, swingDoor.getLastTimeStamp());
+        }
+        if (swingDoor.hasSegment()) nodes.add(new double[]{swingDoor.getEndTimeStamp(), swingDoor.getEndValue()});
+        assertEquals(message + ": the first node", timeStamps[0], (long) nodes.get(0)[0]);
+        assertEquals(message + ": the last node", lastTimeStamp, (long) nodes.get(nodes.size() - 1)[0]);
+
+        int node = 0;
+        for (int i : accepted) {
+            while ((node < nodes.size() - 2) && (nodes.get(node + 1)[0] < timeStamps[i])) node++;
+            double[] left = nodes.get(node);
+            double[] right = nodes.get(Math.min(node + 1, nodes.size() - 1));
+            double approximation = (right[0] == left[0]) ? left[1] : left[1] + (right[1] - left[1])*(timeStamps[i] - left[0])/(right[0] - left[0]);
+            double deviation = Math.abs(values[i] - approximation);
+            assertTrue(message + ": deviation " + deviation + " at " + (timeStamps[i] - START) + " ms", deviation <= resamplingError + ROUNDING*Math.max(1, Math.abs(values[i])));
+        }
+        for (int k = 1; k < nodes.size(); k++) assertTrue(message + ": nodes are not ascending", nodes.get(k)[0] > nodes.get(k - 1)[0]);
+        return nodes;
+    }
+
+    /**
+     * Timestamps with a jitter; a negative step repeats or precedes the previous timestamp in every tenth sample if the jitter is not less than the step.
+     */
+    private static long[] getTimeStamps(Random random, int size, long step, long jitter) {
+        long[] timeStamps = new long[size];
+        long timeStamp = START;
+        for (int i = 0; i < size; i++) {
+            timeStamps[i] = timeStamp;
+            timeStamp += step + ((jitter > 0) ? random.nextInt((int) jitter + 1) - jitter/2 : 0);
+            if ((jitter >= step) && (random.nextInt(10) == 0)) timeStamp = timeStamps[i] - random.nextInt(2)*step;
+        }
+        return timeStamps;
+    }
+}
@@ -0,0 +1,94 @@
+package epitaxy.growthconditions.parameters;
+
+import com.google.gson.Gson;
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.RunFixture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Equivalence of the batch growth rates of the precursors (Precursor.getGrowthRates()) and the scalar ones (getGrowthRate()).
+ */
+public class GrowthRateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void precursorsOfB081() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B081_SHUTTERS, folder.getRoot().toPath());
+        checkPrecursors(run.load(), run.getStartTimeStamp(), run.getStopTimeStamp());
+    }
+
+    @Test
+    public void precursorsOfB052() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B052_SHUTTERS, folder.getRoot().toPath());
+        checkPrecursors(run.load(), run.getStartTimeStamp(), run.getStopTimeStamp());
+    }
+
+    @Test
+    public void nanSamples() {
+        Gson gson = new Gson();
+        EffusionCell effusionCell = gson.fromJson("{\"name\": \"Ga\", \"timeStep_ms\": 1000, \"resamplingError\": 0, "
+                + "\"effusKoeff\": 1e7, \"effusTemperature\": 20000, \"desorpKoeff\": 1e-3, \"desorpTemperature\": 1000}", EffusionCell.class);
+        GasFlow gasFlow = gson.fromJson("{\"name\": \"NH3\", \"timeStep_ms\": 1000, \"resamplingError\": 0, \"a\": 0.5, \"b\": 2}", GasFlow.class);
+        for (Precursor precursor : new Precursor[]{effusionCell, gasFlow}) {
+            precursor.setShutterEvent(0, true);
+            precursor.setShutterEvent(20000, false);
+            precursor.setShutterEvent(30000, true);
+            // the resampling keeps the first sample as a node, so the values of the first segment are NaN
+            for (int i = 0; i <= 40; i++) precursor.addValue(1000L*i, (i == 0) ? Double.NaN : 900 + i);
+            precursor.init();
+            long[] timeStamps = getTimeStamps(-5000, 45000, 250);
+            checkPrecursor(precursor, timeStamps, getTemperatures(timeStamps.length, false));
+            assertTrue(precursor.getName() + ": NaN sample", Double.isNaN(precursor.getGrowthRate(1000, 900)));
+            assertEquals(precursor.getName() + ": out of the intervals", 0, precursor.getGrowthRate(25000, 900), 0);
+        }
+    }
+
+    private static void checkPrecursors(Data data, long startTimeStamp, long stopTimeStamp) {
+        long[] timeStamps = getTimeStamps(startTimeStamp - 60000, stopTimeStamp + 60000, 7001);
+        for (GrowthParameter growthParameter : data.getGrowthParameters()) {
+            if (!(growthParameter instanceof Precursor)) continue;
+            checkPrecursor((Precursor) growthParameter, timeStamps, getTemperatures(timeStamps.length, false));
+            checkPrecursor((Precursor) growthParameter, timeStamps, getTemperatures(timeStamps.length, true));
+        }
+    }
+
+    private static void checkPrecursor(Precursor precursor, long[] timeStamps, double[] substrateTemperatures) {
+        double[] growthRates = new double[timeStamps.length];
+        precursor.getGrowthRates(timeStamps, substrateTemperatures, growthRates);
+        for (int i = 0; i < timeStamps.length; i++)
+            assertSame(precursor.getName() + " at " + timeStamps[i], precursor.getGrowthRate(timeStamps[i], substrateTemperatures[i]), growthRates[i]);
+        if (!(precursor instanceof EffusionCell)) return;
+        EffusionCell effusionCell = (EffusionCell) precursor;
+        effusionCell.getGrowthRates(timeStamps, substrateTemperatures, 0.5, growthRates);
+        for (int i = 0; i < timeStamps.length; i++)
+            assertSame(precursor.getName() + " at " + timeStamps[i] + " with desorption factor", effusionCell.getGrowthRate(timeStamps[i], substrateTemperatures[i], 0.5), growthRates[i]);
+    }
+
+    private static void assertSame(String message, double expected, double actual) {
+        assertEquals(message, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+
+    private static long[] getTimeStamps(long from, long to, long step) {
+        long[] timeStamps = new long[(int) ((to - from)/step) + 1];
+        for (int i = 0; i < timeStamps.length; i++) timeStamps[i] = from + i*step;
+        return timeStamps;
+    }
+
+    /**
+     * It returns a constant substrate temperature or a temperature changing every 10 points.
+     */
+    private static double[] getTemperatures(int count, boolean varying) {
+        double[] temperatures = new double[count];
+        for (int i = 0; i < count; i++) temperatures[i] = varying ? 800 + (i/10)%50 : 850;
+        return temperatures;
+    }
+}
@@ -0,0 +1,59 @@
+package epitaxy.growthconditions.parameters;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Deferred processing of a growth parameter (GrowthParameter.initLazily()): a failed processing must not leave a growth parameter which looks processed.
+ */
+public class LazyProcessingTest {
+
+    @Test
+    public void loadedAtFirstAccess() {
+        GrowthParameter growthParameter = create();
+        growthParameter.initLazily(() -> {
+            for (int i = 0; i < 10; i++) growthParameter.addValue(1000L*i, 5);
+        });
+        assertTrue(growthParameter.isPending());
+        assertEquals(2, growthParameter.size());
+        assertFalse(growthParameter.isPending());
+        assertEquals(9000L, growthParameter.getTimeStamp(1));     // the element accessors see the nodes after size()
+    }
+
+    @Test
+    public void failureIsRethrown() {
+        GrowthParameter growthParameter = create();
+        RuntimeException failure = new RuntimeException("damaged column");
+        growthParameter.initLazily(() -> {
+            growthParameter.addValue(0, 5);
+            throw failure;
+        });
+        try {
+            growthParameter.size();
+            fail("the failure of the loader is lost");
+        }
+        catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+        assertTrue(growthParameter.isPending());
+        for (int k = 0; k < 2; k++) {
+            try {
+                growthParameter.getIntervals();
+                fail("the growth parameter looks processed after the failure");
+            }
+            catch (IllegalStateException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+    }
+
+    private static GrowthParameter create() {
+        return new Gson().fromJson("{\"name\": \"GMpower\", \"timeStep_ms\": 1000, \"resamplingError\": 0.1}", SubstrateHeat.class);
+    }
+}
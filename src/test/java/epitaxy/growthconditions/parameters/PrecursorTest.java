@@ -0,0 +1,82 @@
+package epitaxy.growthconditions.parameters;
+
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.RunFixture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Regression test of Precursor.determineIntervals() against the original algorithm, which scanned all the samples for every period of the opened shutter.
+ */
+public class PrecursorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void intervalsOfB052() throws IOException {
+        checkIntervals(RunFixture.create(RunFixture.B052_SHUTTERS, folder.getRoot().toPath()).load());
+    }
+
+    @Test
+    public void intervalsOfB081() throws IOException {
+        checkIntervals(RunFixture.create(RunFixture.B081_SHUTTERS, folder.getRoot().toPath()).load());
+    }
+
+    private static void checkIntervals(Data data) {
+        int intervalsNumber = 0;
+        for (GrowthParameter growthParameter : data.getGrowthParameters()) {
+            if (!(growthParameter instanceof Precursor)) continue;
+            Precursor precursor = (Precursor) growthParameter;
+            TreeMap<Long, Long> expected = getBaselineIntervals(precursor);
+            TreeMap<Long, Long> actual = precursor.getIntervals();
+            assertEquals(precursor.getName() + ": number of intervals", expected.size(), actual.size());
+            Iterator<Map.Entry<Long, Long>> actualIterator = actual.entrySet().iterator();
+            int k = 0;
+            for (Map.Entry<Long, Long> interval : expected.entrySet()) {
+                assertEquals(precursor.getName() + ": interval " + k, interval, actualIterator.next());
+                k++;
+            }
+            intervalsNumber += actual.size();
+        }
+        assertTrue("the run has no intervals of the precursors", intervalsNumber > 0);
+    }
+
+    /**
+     * The original Precursor.determineIntervals(): for every opening of the shutter, the intervals between the consecutive samples within the opened period.
+     * It fails if the shutter is opened by the last event and there are no samples, so such a precursor is left without intervals.
+     */
+    private static TreeMap<Long, Long> getBaselineIntervals(Precursor precursor) {
+        TreeMap<Long, Long> intervals = new TreeMap<>();
+        List<Long> shutterTime = precursor.shutterTime;
+        List<Boolean> shutterState = precursor.shutterState;
+        long[] timeStamps = precursor.getTimeStamps();
+        int shutterEventsNum = shutterTime.size();
+        for (int i = 0; i < shutterEventsNum; i++) {
+            if (shutterState.get(i) == true) {
+                if ((i == shutterEventsNum - 1) && (timeStamps.length == 0)) break;
+                List<Long> points = new ArrayList<>();
+                points.add(shutterTime.get(i));
+                long last = (i < (shutterEventsNum - 1)) ? shutterTime.get(i + 1) : timeStamps[timeStamps.length - 1];
+                for (long timeStamp : timeStamps)
+                    if ((timeStamp > shutterTime.get(i)) && (timeStamp < last))
+                        points.add(timeStamp);
+                points.add(last);
+                for (int j = 0; j < (points.size() - 1); j++)
+                    intervals.put(points.get(j), points.get(j + 1));
+            }
+        }
+        return intervals;
+    }
+}
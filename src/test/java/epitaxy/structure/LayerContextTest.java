@@ -0,0 +1,71 @@
+package epitaxy.structure;
+
+import com.google.gson.Gson;
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.RunFixture;
+import epitaxy.growthconditions.datatreatment.Approximation;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * The window of the pyrometer temperature of a layer: it must be the period between the nodes of the heater power which contains the center of the layer,
+ * so that a layer does not depend on the heater power after its period.
+ */
+public class LayerContextTest {
+
+    private static final long START = 1524744629668L;
+    private static final long PERIOD = 600000;
+    private static final double[] HEATER_POWER = {10, 30, 15, 35, 20};
+
+    @Test
+    public void windowContainsCenter() throws IOException {
+        Data data = createData();
+        int periods = HEATER_POWER.length - 1;
+        assertEquals("nodes of the heater power", HEATER_POWER.length, data.heaterPower.size());
+        for (int k = 0; k < periods; k++) {
+            long nodeTimeStamp = START + k*PERIOD;
+            for (long center : new long[]{nodeTimeStamp, nodeTimeStamp + 1, nodeTimeStamp + PERIOD/3, nodeTimeStamp + PERIOD - 1}) {
+                String message = "center " + (center - START) + " ms";
+                assertEquals(message, nodeTimeStamp + PERIOD, LayerContext.getPyrometerWindowStop(data, center));
+                double temperature = new LayerContext(data, center).getPyrometerTemperature(center);
+                for (int j = 0; j < periods; j++) {
+                    double fit = getFit(data, j, center);
+                    if (j == k) assertEquals(message, fit, temperature, 0);
+                    else assertNotEquals(message + ", fit of period " + j, fit, temperature, 1e-6);
+                }
+            }
+        }
+        // a center before the first node uses the first period, a center after the last node has no period
+        long before = START - PERIOD/2;
+        assertEquals(START + PERIOD, LayerContext.getPyrometerWindowStop(data, before));
+        assertEquals(getFit(data, 0, before), new LayerContext(data, before).getPyrometerTemperature(before), 0);
+        assertEquals(Long.MAX_VALUE, LayerContext.getPyrometerWindowStop(data, START + periods*PERIOD));
+    }
+
+    private static double getFit(Data data, int period, long timeStamp) {
+        return Approximation.getLinearFit(data.pyrometerTemperature, START + period*PERIOD, START + (period + 1)*PERIOD).getValue(timeStamp);
+    }
+
+    /**
+     * The heater power changes its slope at every node, and the pyrometer temperature drifts along a different line within every period of the heater power.
+     */
+    private static Data createData() throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(RunFixture.SETTINGS)), StandardCharsets.UTF_8);
+        Data data = new Gson().fromJson(json.startsWith("﻿") ? json.substring(1) : json, Data.class);
+        for (int k = 0; k < HEATER_POWER.length; k++) data.heaterPower.addValue(START + k*PERIOD, HEATER_POWER[k]);
+        for (long timeStamp = START - PERIOD; timeStamp <= START + HEATER_POWER.length*PERIOD; timeStamp += 10000) {
+            long period = Math.floorDiv(timeStamp - START, PERIOD);
+            data.pyrometerTemperature.addValue(timeStamp, 600 + 40*period + (1 + period%2)*1e-4*(timeStamp - START - period*PERIOD));
+        }
+        data.heaterPower.init();
+        data.pyrometerTemperature.init();
+        return data;
+    }
+}
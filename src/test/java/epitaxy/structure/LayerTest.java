@@ -0,0 +1,95 @@
+package epitaxy.structure;
+
+import com.google.gson.Gson;
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.RunFixture;
+import epitaxy.growthconditions.parameters.EffusionCell;
+import org.junit.Test;
+import util.PipelineMetrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration of the growth rate over a layer: the nominal thickness must be within the relative error Data.thicknessError of the integral over a dense grid,
+ * and a layer with a constant growth rate must be integrated by a few evaluations of the material.
+ */
+public class LayerTest {
+
+    private static final long START = 1524744629668L;
+    private static final long HOUR = 3600000;
+    private static final int GRID = 20000;
+
+    /**
+     * The gallium cell is kept at a constant temperature for an hour and then heated linearly for an hour, its shutter is open all the time.
+     */
+    @Test
+    public void thicknessOfMetalLayers() throws IOException {
+        Data data = createData();
+        long constantStart = START + 60000;
+        long constantStop = START + HOUR - 60000;
+        long rampStart = START + HOUR + 60000;
+        long rampStop = START + 2*HOUR - 60000;
+
+        boolean enabled = PipelineMetrics.isMetricsEnabled();
+        PipelineMetrics.setMetricsEnabled(true);
+        long evaluations;
+        Layer constant;
+        try {
+            PipelineMetrics.resetMetrics();
+            constant = new Layer(0, constantStart, constantStop, data);
+            evaluations = PipelineMetrics.getTotal(PipelineMetrics.Metric.MATERIAL_EVALUATIONS);
+        }
+        finally {
+            PipelineMetrics.setMetricsEnabled(enabled);
+        }
+        double rate = new Material(data, constantStart).getGrowthRate();
+        assertTrue("no growth", rate > 0);
+        assertEquals(rate*(constantStop - constantStart)/HOUR, constant.getNominalThickness(), data.thicknessError*rate*(constantStop - constantStart)/HOUR);
+        assertTrue("evaluations of a constant layer: " + evaluations, evaluations <= 10);
+
+        Layer ramp = new Layer(1, rampStart, rampStop, data);
+        double expected = integrate(data, rampStart, rampStop);
+        assertTrue("the growth rate does not change", new Material(data, rampStop).getGrowthRate() > 2*new Material(data, rampStart).getGrowthRate());
+        assertEquals(expected, ramp.getNominalThickness(), data.thicknessError*expected);
+    }
+
+    /**
+     * It integrates the growth rate by the composite Simpson's rule over a dense grid.
+     * @return thickness in micrometers
+     */
+    private static double integrate(Data data, long start, long stop) {
+        long center = Layer.getCenterTimeStamp(start, stop);
+        double step = (double) (stop - start)/GRID;
+        double sum = 0;
+        for (int i = 0; i <= GRID; i++) {
+            long timeStamp = (i == GRID) ? stop : start + Math.round(i*step);
+            double rate = new Material(data, timeStamp, center).getGrowthRate();
+            sum += ((i == 0) || (i == GRID)) ? rate : ((i%2 == 1) ? 4*rate : 2*rate);
+        }
+        return sum*step/3/HOUR;
+    }
+
+    private static Data createData() throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(RunFixture.SETTINGS)), StandardCharsets.UTF_8);
+        Data data = new Gson().fromJson(json.startsWith("﻿") ? json.substring(1) : json, Data.class);
+        data.gallium = new Gson().fromJson("{\"name\": \"Ga\", \"timeStep_ms\": 1000, \"resamplingError\": 0.01, \"effusKoeff\": 5e9, \"effusTemperature\": 20000, "
+                + "\"desorpKoeff\": 1e-3, \"desorpTemperature\": 3000}", EffusionCell.class);
+        for (long timeStamp = START; timeStamp <= START + 2*HOUR; timeStamp += 10000) {
+            double temperature = 900 + ((timeStamp > START + HOUR) ? 100.0*(timeStamp - START - HOUR)/HOUR : 0);
+            data.gallium.addValue(timeStamp, temperature);
+            data.heaterPower.addValue(timeStamp, 30);
+            data.pyrometerTemperature.addValue(timeStamp, 650);
+        }
+        data.gallium.setShutterEvent(START, true);
+        data.gallium.init();
+        data.heaterPower.init();
+        data.pyrometerTemperature.init();
+        return data;
+    }
+}
@@ -0,0 +1,89 @@
+package server;
+
+import epitaxy.growthconditions.Data;
+import epitaxy.growthconditions.FilesMBE;
+import epitaxy.growthconditions.RunFixture;
+import epitaxy.growthconditions.parameters.GrowthParameter;
+import epitaxy.structure.Heterostructure;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The estimated weight of the analyses: the parts retained after the reconstruction and the raw samples of the pending growth parameters must be counted,
+ * and the eviction must keep the weight of the cached analyses under the limit.
+ */
+public class AnalysisCacheTest {
+
+    private static final int WINDOWS = 6;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The prefix sums of the pyrometer temperature are built by the reconstruction and retained, so building them again must not change the estimate.
+     * Without the column projection, the growth parameters which are not needed for the reconstruction stay pending with their raw samples.
+     */
+    @Test
+    public void retainedPartsAreCounted() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B081_SHUTTERS, folder.getRoot().toPath());
+        List<GrowthParameter> rawParameters = run.parse(null).getGrowthParameters();
+        FilesMBE.setRunCaching(false);
+        FilesMBE.setColumnProjection(false);
+        Data data;
+        try {
+            data = run.load();
+        }
+        finally {
+            FilesMBE.setRunCaching(true);
+            FilesMBE.setColumnProjection(true);
+        }
+        Heterostructure heterostructure = new Heterostructure(data);
+        long weight = AnalysisCache.estimateWeight(data, heterostructure);
+
+        GrowthParameter pyrometerTemperature = data.pyrometerTemperature;
+        long estimate = pyrometerTemperature.estimateHeapSize();
+        assertTrue("prefix sums", estimate >= pyrometerTemperature.getPrefixSums().getHeapSize());
+        assertEquals("prefix sums are built again", estimate, pyrometerTemperature.estimateHeapSize());
+
+        List<GrowthParameter> growthParameters = data.getGrowthParameters();
+        int pending = 0;
+        for (int k = 0; k < growthParameters.size(); k++) {
+            GrowthParameter growthParameter = growthParameters.get(k);
+            if (!growthParameter.isPending()) continue;
+            int rawSamples = rawParameters.get(k).getTimeStamps().length;
+            if (rawSamples > 0) pending++;
+            assertTrue(growthParameter.getName() + ": raw samples", growthParameter.estimateHeapSize() >= (long) (Long.BYTES + Double.BYTES)*rawSamples);
+        }
+        assertTrue("no pending growth parameters with raw samples", pending > 0);
+        assertEquals("the estimate processes the pending growth parameters", weight, AnalysisCache.estimateWeight(data, heterostructure));
+    }
+
+    /**
+     * The analyses of different windows of a run are requested one after another from a cache holding about two of them.
+     */
+    @Test
+    public void evictionKeepsWeightUnderLimit() throws IOException {
+        RunFixture run = RunFixture.create(RunFixture.B081_SHUTTERS, folder.getRoot().toPath());
+        long duration = run.getStopTimeStamp() - run.getStartTimeStamp();
+        long[][] windows = new long[WINDOWS][];
+        for (int i = 0; i < WINDOWS; i++)
+            windows[i] = new long[]{run.getStartTimeStamp() + duration*i/(2*WINDOWS), run.getStartTimeStamp() + duration*(WINDOWS + i)/(2*WINDOWS)};
+        AnalysisCache.Analysis first = new AnalysisCache(Long.MAX_VALUE).get(run.getValues(), run.getShutters(), run.getSettings(), windows[0][0], windows[0][1]);
+        AnalysisCache cache = new AnalysisCache(5*first.getWeight()/2);
+        for (long[] window : windows) {
+            AnalysisCache.Analysis analysis = cache.get(run.getValues(), run.getShutters(), run.getSettings(), window[0], window[1]);
+            assertEquals("weight changed after the load", analysis.getWeight(), AnalysisCache.estimateWeight(analysis.getData(), analysis.getHeterostructure()));
+            assertTrue("the analysis is evicted", cache.getWeight() >= analysis.getWeight());
+            assertTrue("weight " + cache.getWeight() + " exceeds the limit", cache.getWeight() <= cache.getMaxWeight());
+        }
+        assertTrue("no evictions", cache.getEvictionCount() > 0);
+        assertEquals(WINDOWS - cache.getEvictionCount(), cache.size());
+    }
+}
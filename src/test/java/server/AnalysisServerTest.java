@@ -0,0 +1,73 @@
+package server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The address the server listens to by default and the response to an internal error.
+ */
+public class AnalysisServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loopbackByDefault() throws IOException {
+        AnalysisServer server = new AnalysisServer(folder.getRoot().toPath(), 0, 1, 1);
+        try {
+            assertTrue(server.getAddress().isLoopbackAddress());
+        }
+        finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void internalErrorIsNotDisclosed() throws IOException {
+        Path run = folder.newFolder("B000").toPath();
+        Files.write(run.resolve("values.csv"), "Дата Время;Ga\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(run.resolve("shutters.csv"), "Дата Время;Ga\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(run.resolve("settings.json"), "{\"ga\": [".getBytes(StandardCharsets.UTF_8));
+        Logger logger = Logger.getLogger(AnalysisServer.class.getName());
+        Level level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+        AnalysisServer server = new AnalysisServer(folder.getRoot().toPath(), 0, 1, 1);
+        server.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://" + server.getAddress().getHostAddress() + ":" + server.getPort()
+                    + "/heterostructure?run=B000").openConnection();
+            assertEquals(500, connection.getResponseCode());
+            String body = read(connection.getErrorStream());
+            assertEquals("{\"error\":\"Internal server error\"}", body);
+            assertFalse(body.contains(folder.getRoot().toString()));
+        }
+        finally {
+            server.stop(0);
+            logger.setLevel(level);
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0; ) out.write(buffer, 0, n);
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
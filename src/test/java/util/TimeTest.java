@@ -0,0 +1,95 @@
+package util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Round trip of util.Time against SimpleDateFormat in the default time zone, including the days of the daylight saving transitions and the lenient fields.
+ */
+public class TimeTest {
+
+    private static final String PATTERN = "dd.MM.yyyy HH:mm:ss:SSS";
+    private static final long FROM = 946684800000L;        // 2000-01-01
+    private static final long TO = 1893456000000L;         // 2030-01-01
+
+    private final DateFormat format = new SimpleDateFormat(PATTERN);
+
+    @Test
+    public void randomTimeStamps() throws ParseException {
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; i++) {
+            long timeStamp = FROM + (long) (random.nextDouble()*(TO - FROM));
+            check(timeStamp);
+        }
+    }
+
+    @Test
+    public void consecutiveTimeStamps() throws ParseException {
+        // a run sampled every second uses the cached day
+        long timeStamp = 1524744629668L;
+        for (int i = 0; i < 200000; i++, timeStamp += 1000) check(timeStamp);
+    }
+
+    @Test
+    public void daylightSavingTransitions() throws ParseException {
+        TimeZone zone = TimeZone.getDefault();
+        long step = 3600000L;
+        for (long timeStamp = FROM; timeStamp < TO; timeStamp += step) {
+            if (zone.getOffset(timeStamp) == zone.getOffset(timeStamp + step)) continue;
+            // every minute of the hours around the transition
+            for (long t = timeStamp - 2*step; t < timeStamp + 3*step; t += 60000L) check(t + 123);
+        }
+    }
+
+    @Test
+    public void lenientFields() throws ParseException {
+        String[] timeStamps = {
+                "31.12.2017 24:00:00:000",
+                "31.12.2017 23:60:00:000",
+                "31.12.2017 23:59:60:000",
+                "31.12.2017 23:59:59:1000",
+                "28.02.2018 47:30:75:1500",
+                "32.01.2018 12:00:00:000",
+                "15.13.2018 12:00:00:000",
+                "29.02.2019 00:00:00:000",
+                "25.03.2018 99:99:99:999",
+                "28.10.2018 02:90:00:000",
+                "24.03.2018 47:30:00:000",      // the following day is the transition day in Europe
+                "27.10.2018 47:30:00:000",
+                "10.03.2018 47:30:00:000",      // the same in North America
+                "03.11.2018 47:30:00:000",
+        };
+        for (String timeStamp : timeStamps) {
+            long expected = format.parse(timeStamp).getTime();
+            assertEquals(timeStamp, expected, Time.strToMillis45(timeStamp));
+            byte[] bytes = (" " + timeStamp + ";").getBytes(StandardCharsets.US_ASCII);
+            assertEquals(timeStamp, expected, Time.bytesToMillis45(bytes, 0, bytes.length - 1));
+        }
+    }
+
+    @Test
+    public void malformedTimeStamps() {
+        assertEquals(0, Time.strToMillis45(""));
+        assertEquals(0, Time.strToMillis45("26.04.2018 15:10"));
+        assertEquals(0, Time.strToMillis45("26.04.2018 15:1a:00:000"));
+    }
+
+    private void check(long timeStamp) throws ParseException {
+        String expected = format.format(new Date(timeStamp));
+        String actual = Time.millisToStr(timeStamp);
+        assertEquals(expected, actual);
+        long parsed = format.parse(expected).getTime();
+        assertEquals(expected, parsed, Time.strToMillis45(actual));
+        byte[] bytes = actual.getBytes(StandardCharsets.US_ASCII);
+        assertEquals(expected, parsed, Time.bytesToMillis45(bytes, 0, bytes.length));
+    }
+}